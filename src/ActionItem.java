@@ -0,0 +1,266 @@
+package menu;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import processing.core.*;
+
+/* A MenuItem that works like a button. Pressing enter, return, or right
+ * arrow runs its Task on an Executor, so slow work such as exporting frames
+ * or saving presets does not block drawing or key input. By default, tasks
+ * run on virtual threads if the JVM has them, and on a shared pool of daemon
+ * threads otherwise.
+ *
+ * While the task runs, the item shows its progress, further presses are
+ * ignored, and left arrow or backspace cancels it. Keys are interpreted
+ * through the menu's Keymap.
+ */
+public class ActionItem extends MenuItem {
+
+	/* The work done by an ActionItem. The task may report its progress
+	 * with item.setProgress() and should stop early if item.isCancelled()
+	 * becomes true.
+	 */
+	public interface Task {
+		void run(ActionItem item) throws Exception;
+	}
+
+	// States of an ActionItem.
+	public static final int IDLE = 0;
+	public static final int RUNNING = 1;
+	public static final int DONE = 2;
+	public static final int FAILED = 3;
+	public static final int CANCELLED = 4;
+
+	// Executor used by items that are not given their own. Created when
+	// first needed.
+	private static Executor defaultExecutor;
+
+	// The work to do when this item is activated.
+	private final Task task;
+
+	// Executor the task is run on.
+	private Executor executor;
+
+	// Current state, one of the constants above.
+	private volatile int state;
+
+	// Progress of the running task from 0 to 1, or -1 if unknown.
+	private volatile float progress;
+
+	// Has the running task been asked to stop?
+	private volatile boolean cancelled;
+
+	// Exception or error thrown by the last run of the task, if any.
+	private volatile Throwable error;
+
+	// Thread running the task, or null if it is not running.
+	private Thread worker;
+
+	/* Constructor.
+	 * nameInit is the label of this item and taskInit is the work to run
+	 * when it is activated. The task runs on the default executor.
+	 */
+	public ActionItem(PApplet p, String nameInit, Task taskInit) {
+		this(p, nameInit, taskInit, null);
+	}
+
+	/* Constructor.
+	 * Same as above, but the task runs on the given executor. If executorInit
+	 * is null, the default executor is used.
+	 */
+	public ActionItem(PApplet p, String nameInit, Task taskInit, Executor executorInit) {
+		super(p, nameInit);
+		if (taskInit == null) {
+			throw new IllegalArgumentException("Task must not be null.");
+		}
+		task = taskInit;
+		executor = executorInit;
+		state = IDLE;
+		progress = -1;
+	}
+
+	/* Implementation of MenuItem.toString().
+	 * Returns the name of this item followed by the state of its task.
+	 */
+	public String toString() {
+		int s = state;
+		if (s == RUNNING) {
+			float p = progress;
+			return p < 0 ? name + " [running]" : name + " [" + (int)(p * 100) + "%]";
+		} else if (s == DONE) {
+			return name + " [done]";
+		} else if (s == FAILED) {
+			return name + " [failed]";
+		} else if (s == CANCELLED) {
+			return name + " [cancelled]";
+		}
+		return name;
+	}
+
+	/* Implementation of MenuItem.action().
+	 * Performs some action on a keypress, using the standard keymap.
+	 */
+	protected boolean action(char key, int keyCode) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * ENTER or INCREMENT (ENTER/RETURN or RIGHT ARROW): start the task,
+	 * unless it is already running.
+	 * DECREMENT or BACK (LEFT ARROW or BACKSPACE): cancel the task if it is
+	 * running. Otherwise, BACK leaves the current SubMenu as usual.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == MenuCommand.ENTER || command == MenuCommand.INCREMENT) {
+			return start();
+		} else if (command == MenuCommand.DECREMENT || command == MenuCommand.BACK) {
+			return cancel();
+		}
+		return false;
+	}
+
+	/* Start running the task on this item's executor. Returns immediately
+	 * unless the executor runs tasks on the calling thread.
+	 * Returns false without doing anything if the task is already running.
+	 */
+	public boolean start() {
+		Executor e;
+		synchronized (this) {
+			if (state == RUNNING) {
+				return false;
+			}
+			state = RUNNING;
+			progress = -1;
+			cancelled = false;
+			error = null;
+			e = getExecutor();
+		}
+		// Hand the task over without holding the lock, so an executor
+		// that blocks or runs the task itself does not hold up this item.
+		try {
+			e.execute(this::runTask);
+		} catch (RejectedExecutionException ex) {
+			synchronized (this) {
+				error = ex;
+				state = FAILED;
+			}
+		}
+		return true;
+	}
+
+	/* Ask the running task to stop and interrupt its thread. Returns true
+	 * iff the task was running.
+	 */
+	public synchronized boolean cancel() {
+		if (state != RUNNING || cancelled) {
+			return false;
+		}
+		cancelled = true;
+		if (worker != null) {
+			worker.interrupt();
+		}
+		return true;
+	}
+
+	/* Runs the task on the executor's thread and records how it ended. */
+	private void runTask() {
+		synchronized (this) {
+			worker = Thread.currentThread();
+		}
+		// FAILED unless the task ends normally, including when it throws
+		// an Error, which is passed on to the executor's thread.
+		int result = FAILED;
+		try {
+			if (!cancelled) {
+				task.run(this);
+			}
+			result = cancelled ? CANCELLED : DONE;
+		} catch (InterruptedException e) {
+			result = CANCELLED;
+		} catch (Exception e) {
+			error = e;
+			result = cancelled ? CANCELLED : FAILED;
+		} catch (Error e) {
+			error = e;
+			throw e;
+		} finally {
+			synchronized (this) {
+				worker = null;
+				// Clear an interrupt from cancel() so it does not leak into
+				// the executor's next task.
+				Thread.interrupted();
+				state = result;
+			}
+		}
+	}
+
+	/* Report the progress of the running task, from 0 to 1. Values outside
+	 * that range are clamped. A negative value means progress is unknown.
+	 */
+	public void setProgress(float p) {
+		progress = p < 0 ? -1 : Math.min(p, 1);
+	}
+
+	/* Returns the progress of the task, from 0 to 1, or -1 if unknown. */
+	public float getProgress() {
+		return progress;
+	}
+
+	/* Returns true iff the running task has been asked to stop. */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* Returns true iff the task is running. */
+	public boolean isRunning() {
+		return state == RUNNING;
+	}
+
+	/* Returns the state of this item: IDLE, RUNNING, DONE, FAILED, or CANCELLED. */
+	public int getState() {
+		return state;
+	}
+
+	/* Returns the exception or error thrown by the last run of the task,
+	 * or null.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/* Set the executor used the next time the task is started.
+	 * If executorSet is null, the default executor is used.
+	 */
+	public void setExecutor(Executor executorSet) {
+		executor = executorSet;
+	}
+
+	/* Returns the executor the task is run on. */
+	public Executor getExecutor() {
+		return executor != null ? executor : defaultExecutor();
+	}
+
+	/* Returns the executor shared by items without one of their own.
+	 * Uses a virtual thread per task when the JVM supports them, and
+	 * a cached pool of daemon threads otherwise.
+	 */
+	public static synchronized Executor defaultExecutor() {
+		if (defaultExecutor == null) {
+			try {
+				Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				defaultExecutor = (ExecutorService)m.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				defaultExecutor = Executors.newCachedThreadPool(r -> {
+					Thread t = new Thread(r, "TextMenu action");
+					t.setDaemon(true);
+					return t;
+				});
+			}
+		}
+		return defaultExecutor;
+	}
+}
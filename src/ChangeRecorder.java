@@ -0,0 +1,319 @@
+package menu;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/* Records every change to an option's value while it is running, and
+ * writes the changes to a file for later analysis. Each record holds the
+ * time of the change from System.nanoTime(), the path of the item in the
+ * menu (such as "colors/background"), and its old and new value, passed as
+ * numbers as described in MenuItem.changed().
+ *
+ * Changes are stored in a preallocated ring buffer without locks or
+ * allocation, and a background thread writes them to the file in batches,
+ * so recording never blocks drawing or key input on I/O. If the writer
+ * falls behind far enough to fill the buffer, further changes are dropped
+ * and counted. Paths are looked up by the writer thread, so an item that
+ * is no longer in the menu by then is recorded with just its name.
+ *
+ * Records are written as CSV lines "time_ns,path,old,new", or in binary as
+ * a long, a modified UTF-8 string, and two doubles (see DataOutputStream).
+ * Only one ChangeRecorder can run at a time.
+ */
+public class ChangeRecorder {
+
+	// The recorder that is running, if any. Read by MenuItem.changed().
+	static volatile ChangeRecorder active;
+
+	// How long the writer waits for more records when the buffer is empty.
+	private static final long WRITE_INTERVAL_NANOS = 50000000L;
+
+	// Menu whose items' paths are recorded.
+	private final TextMenu menu;
+
+	// File to write to, and whether to write binary instead of CSV.
+	private final String path;
+	private final boolean binary;
+
+	// The ring buffer. Slot i holds the record with sequence number s if
+	// s % capacity == i and published[i] == s.
+	private final int capacity, mask;
+	private final MenuItem[] items;
+	private final long[] times;
+	private final double[] oldValues, newValues;
+	private final AtomicLongArray published;
+
+	// Sequence number of the next record to be claimed by a producer.
+	private final AtomicLong head;
+
+	// Sequence number of the next record to be written. Only changed by
+	// the writer thread.
+	private volatile long tail;
+
+	// Number of records dropped because the buffer was full.
+	private final AtomicLong dropped;
+
+	// Background thread writing the records, and whether it should keep going.
+	private Thread writer;
+	private volatile boolean running;
+
+	// Exception that stopped the writer, if any.
+	private volatile Exception error;
+
+	/* Constructor.
+	 * menuInit is the menu whose items are recorded with their paths,
+	 * pathInit is the file to write to, binaryInit selects the binary
+	 * format instead of CSV, and capacityInit is the number of records the
+	 * buffer can hold, rounded up to a power of two.
+	 */
+	public ChangeRecorder(TextMenu menuInit, String pathInit, boolean binaryInit, int capacityInit) {
+		if (capacityInit <= 0 || capacityInit > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacityInit);
+		}
+		menu = menuInit;
+		path = pathInit;
+		binary = binaryInit;
+		int size = 1;
+		while (size < capacityInit) {
+			size <<= 1;
+		}
+		capacity = size;
+		mask = capacity - 1;
+		items = new MenuItem[capacity];
+		times = new long[capacity];
+		oldValues = new double[capacity];
+		newValues = new double[capacity];
+		published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			published.set(i, -1);
+		}
+		head = new AtomicLong();
+		dropped = new AtomicLong();
+		running = false;
+	}
+
+	/* Open the file and start recording changes. Throws an exception if
+	 * the file cannot be opened or another recorder is already running.
+	 * Does nothing if this recorder was started and not closed since.
+	 */
+	public synchronized void start() throws IOException {
+		if (writer != null) {
+			return;
+		}
+		FileOutputStream out = new FileOutputStream(path);
+		synchronized (ChangeRecorder.class) {
+			if (active != null) {
+				out.close();
+				throw new IllegalStateException("Another ChangeRecorder is already running.");
+			}
+			active = this;
+		}
+		error = null;
+		running = true;
+		writer = new Thread(() -> write(out), "TextMenu change recorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/* Stop recording, write any records still in the buffer, and close
+	 * the file. Blocks until the writer thread has finished. Throws the
+	 * exception that stopped the writer, if it failed.
+	 */
+	public synchronized void close() throws IOException {
+		if (writer == null) {
+			return;
+		}
+		synchronized (ChangeRecorder.class) {
+			if (active == this) {
+				active = null;
+			}
+		}
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writer = null;
+		Exception e = error;
+		if (e instanceof IOException) {
+			throw (IOException)e;
+		} else if (e != null) {
+			throw (RuntimeException)e;
+		}
+	}
+
+	/* Returns true iff this recorder is running. False once the writer
+	 * has failed; see getError().
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/* Returns the exception that stopped the writer, or null if it has
+	 * not failed.
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	/* Returns the number of changes recorded so far, including dropped ones. */
+	public long recorded() {
+		return head.get() + dropped.get();
+	}
+
+	/* Returns the number of changes dropped because the buffer was full. */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/* Add a change to the buffer. Called by MenuItem.changed() from any
+	 * thread. Never blocks; if the buffer is full, the change is dropped.
+	 */
+	void record(MenuItem item, double oldValue, double newValue) {
+		long time = System.nanoTime();
+		long seq;
+		do {
+			seq = head.get();
+			if (seq - tail >= capacity) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!head.compareAndSet(seq, seq + 1));
+
+		int slot = (int)(seq & mask);
+		items[slot] = item;
+		times[slot] = time;
+		oldValues[slot] = oldValue;
+		newValues[slot] = newValue;
+		published.lazySet(slot, seq);
+	}
+
+	/* Body of the writer thread. Writes records as they are published
+	 * until the recorder is closed and the buffer is empty.
+	 */
+	private void write(FileOutputStream file) {
+		IdentityHashMap<MenuItem, String> paths = new IdentityHashMap<>();
+		try (FileOutputStream f = file) {
+			DataOutputStream data = null;
+			BufferedWriter text = null;
+			if (binary) {
+				data = new DataOutputStream(new BufferedOutputStream(f));
+			} else {
+				text = new BufferedWriter(new OutputStreamWriter(f, StandardCharsets.UTF_8));
+				text.write("time_ns,path,old,new");
+				text.newLine();
+			}
+
+			while (true) {
+				boolean stopping = !running;
+				long t = tail;
+				int slot = (int)(t & mask);
+				if (published.get(slot) != t) {
+					if (binary)
+						data.flush();
+					else
+						text.flush();
+					if (stopping)
+						break;
+					LockSupport.parkNanos(WRITE_INTERVAL_NANOS);
+					continue;
+				}
+
+				MenuItem item = items[slot];
+				long time = times[slot];
+				double oldValue = oldValues[slot];
+				double newValue = newValues[slot];
+				items[slot] = null;
+				tail = t + 1;
+
+				String itemPath = pathOf(item, paths);
+				if (binary) {
+					data.writeLong(time);
+					data.writeUTF(itemPath);
+					data.writeDouble(oldValue);
+					data.writeDouble(newValue);
+				} else {
+					text.write(Long.toString(time));
+					text.write(',');
+					text.write(csv(itemPath));
+					text.write(',');
+					text.write(Double.toString(oldValue));
+					text.write(',');
+					text.write(Double.toString(newValue));
+					text.newLine();
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			error = e;
+			synchronized (ChangeRecorder.class) {
+				if (active == this) {
+					active = null;
+				}
+			}
+			running = false;
+		}
+	}
+
+	/* Returns the path of an item in the menu, using and filling a cache
+	 * of the paths of all items. Items not found in the menu are recorded
+	 * by name.
+	 */
+	private String pathOf(MenuItem item, IdentityHashMap<MenuItem, String> paths) {
+		String p = paths.get(item);
+		if (p == null) {
+			paths.clear();
+			if (menu != null) {
+				try {
+					collectPaths(menu.getTopMenu(), "", paths);
+				} catch (RuntimeException e) {
+					// The menu changed while it was being read; fall back
+					// to the item's name below.
+				}
+			}
+			p = paths.get(item);
+			if (p == null) {
+				p = nameOf(item);
+				paths.put(item, p);
+			}
+		}
+		return p;
+	}
+
+	/* Add the paths of the items in a SubMenu, and any SubMenus in it, to
+	 * the map. prefix is the path of the SubMenu, ending in '/'.
+	 */
+	private static void collectPaths(SubMenu sub, String prefix, IdentityHashMap<MenuItem, String> paths) {
+		for (int i = 0; i < sub.size(); i++) {
+			MenuItem item = sub.get(i);
+			if (item == null || paths.containsKey(item))
+				continue;
+			String p = prefix + nameOf(item);
+			paths.put(item, p);
+			if (item instanceof SubMenu)
+				collectPaths((SubMenu)item, p + "/", paths);
+		}
+	}
+
+	/* Returns the name of an item as used in paths, or "?" if it has none. */
+	private static String nameOf(MenuItem item) {
+		return item.name == null ? "?" : item.name;
+	}
+
+	/* Returns a string quoted for CSV if needed. */
+	private static String csv(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+			return s;
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+}
@@ -1,4 +1,6 @@
 package menu;
+import java.awt.Color;
+
 import processing.core.*;
 
 /* A MenuItem that stores a 3-component color.
@@ -8,14 +10,37 @@ import processing.core.*;
  */
 public class ColorOption extends MenuItem {
 
+	// Component names for each color mode, shared by all ColorOptions.
+	private static final String[] RGB_NAMES = { "R", "G", "B" };
+	private static final String[] HSB_NAMES = { "H", "S", "B" };
+
 	// The color mode of this color. May be RGB or HSB.
 	final private int colorMode;
+
+	// PApplet for converting colors, or null to use the one of the
+	// TextMenu this option is in.
+	protected final PApplet parent;
 	
-	protected SubMenu colorMenu;
+	// Submenu holding the component options. Only created once the
+	// color is first entered through the menu; null until then. Volatile
+	// and set after the components exist, so a thread that sees it also
+	// sees the components.
+	protected volatile SubMenu colorMenu;
 
-	// The three component values of this color.
+	// The SubMenu containing this option and the TextMenu it is in,
+	// kept so colorMenu can be linked up when it is created.
+	protected SubMenu superMenu;
+	protected TextMenu menu;
+
+	// The three component values of this color, used until colorMenu
+	// is created. After that, the component options below hold them.
 	// If colorMode is RGB, they are red, green, and blue respectively.
 	// If colorMode is HSB, they are hue, saturation, and brightness instead.
+	private volatile int value1, value2, value3;
+	// Initial values of the three components, packed 8 bits each, used
+	// as the component options' defaults.
+	private final int defaults;
+	// Options for the three components, created along with colorMenu.
 	private IntegerOption component1, component2, component3;
 
 	/* Constructor.
@@ -25,36 +50,46 @@ public class ColorOption extends MenuItem {
 	 */
 	public ColorOption(PApplet p, String nameInit, int colorModeInit, int comp1, int comp2, int comp3) {
 		super(p, nameInit);
+		parent = p;
 		colorMode = colorModeInit;
-		char[] cm;
-		if (colorMode == RGB) {
-			cm = "RGB".toCharArray();
-		} else if (colorMode == HSB) {
-			cm = "HSB".toCharArray();
-		} else {
+		if (colorMode != RGB && colorMode != HSB) {
 			throw new IllegalArgumentException("Invalid color mode: " + colorModeInit);
 		}
-		component1 = new IntegerOption(parent, cm[0] + "", comp1, 0, 255);
-		component2 = new IntegerOption(parent, cm[1] + "", comp2, 0, 255);
-		component3 = new IntegerOption(parent, cm[2] + "", comp3, 0, 255);
-		
-		colorMenu = new SubMenu(parent, name + " menu");
-		colorMenu.add(component3, component2, component1);
+		if (comp1 < 0 || comp1 > 255 || comp2 < 0 || comp2 > 255 || comp3 < 0 || comp3 > 255) {
+			throw new IllegalArgumentException("Initial value not in specified range.");
+		}
+		value1 = comp1;
+		value2 = comp2;
+		value3 = comp3;
+		defaults = comp1 << 16 | comp2 << 8 | comp3;
 	}
 
 	/* Set this ColorOption to a specific color. Returns true iff the color
-	 * changed.
+	 * changed. Without a PApplet, the color is read as ARGB.
 	 */
 	public boolean set(int newColor) {
 		boolean ret = false;
-		if (colorMode == RGB) {
-			ret |= component1.set(Math.round(parent.red(newColor)));
-			ret |= component2.set(Math.round(parent.green(newColor)));
-			ret |= component3.set(Math.round(parent.blue(newColor)));
+		PApplet parent = applet();
+		if (parent == null) {
+			int r = newColor >> 16 & 0xFF, g = newColor >> 8 & 0xFF, b = newColor & 0xFF;
+			if (colorMode == RGB) {
+				ret |= setComponent(r, 0);
+				ret |= setComponent(g, 1);
+				ret |= setComponent(b, 2);
+			} else {
+				float[] hsb = Color.RGBtoHSB(r, g, b, null);
+				ret |= setComponent(Math.round(hsb[0] * 255), 0);
+				ret |= setComponent(Math.round(hsb[1] * 255), 1);
+				ret |= setComponent(Math.round(hsb[2] * 255), 2);
+			}
+		} else if (colorMode == RGB) {
+			ret |= setComponent(Math.round(parent.red(newColor)), 0);
+			ret |= setComponent(Math.round(parent.green(newColor)), 1);
+			ret |= setComponent(Math.round(parent.blue(newColor)), 2);
 		} else if (colorMode == HSB) {
-			ret |= component1.set(Math.round(parent.hue(newColor)));
-			ret |= component2.set(Math.round(parent.saturation(newColor)));
-			ret |= component3.set(Math.round(parent.brightness(newColor)));
+			ret |= setComponent(Math.round(parent.hue(newColor)), 0);
+			ret |= setComponent(Math.round(parent.saturation(newColor)), 1);
+			ret |= setComponent(Math.round(parent.brightness(newColor)), 2);
 		}
 		return ret;
 	}
@@ -71,14 +106,48 @@ public class ColorOption extends MenuItem {
 	 * saturation, and the third brightness.
 	 */
 	public boolean setComponent(int val, int comp) {
+		if (comp < 0 || comp > 2)
+			throw new IllegalArgumentException("Component argument must be 0, 1, or 2. Given: " + comp);
+		if (colorMenu == null) {
+			// Store the value here unless colorMenu() is moving the
+			// values into the components at the same time.
+			int oldColor = 0, newColor = 0;
+			boolean stored = false;
+			synchronized (this) {
+				if (colorMenu == null) {
+					oldColor = packed();
+					int newValue = Math.max(Math.min(val, 255), 0);
+					if (comp == 0)
+						value1 = newValue;
+					else if (comp == 1)
+						value2 = newValue;
+					else
+						value3 = newValue;
+					newColor = packed();
+					stored = true;
+				}
+			}
+			if (stored) {
+				if (oldColor != newColor) {
+					changed(oldColor, newColor);
+					return true;
+				}
+				return false;
+			}
+		}
 		if (comp == 0)
 			return component1.set(val);
 		else if (comp == 1)
 			return component2.set(val);
-		else if (comp == 2)
-			return component3.set(val);
 		else
-			throw new IllegalArgumentException("Component argument must be 0, 1, or 2. Given: " + comp);
+			return component3.set(val);
+	}
+
+	/* Returns the three components packed 8 bits each, first component
+	 * highest. This is how the color is passed to MenuItem.changed().
+	 */
+	int packed() {
+		return getComponent(0) << 16 | getComponent(1) << 8 | getComponent(2);
 	}
 
 	/* Returns the value of one component of this color.
@@ -91,12 +160,13 @@ public class ColorOption extends MenuItem {
 	 * saturation, and the third brightness.
 	 */
 	public int getComponent(int comp) {
+		boolean created = colorMenu != null;
 		if (comp == 0)
-			return component1.get();
+			return created ? component1.get() : value1;
 		else if (comp == 1)
-			return component2.get();
+			return created ? component2.get() : value2;
 		else if (comp == 2)
-			return component3.get();
+			return created ? component3.get() : value3;
 		else
 			throw new IllegalArgumentException("Component argument must be 0, 1, or 2. Given: " + comp);
 	}
@@ -105,23 +175,51 @@ public class ColorOption extends MenuItem {
 	 * WARNING: This function may change the color mode of the PApplet.
 	 * If colors are used elsewhere in the project, be sure to call colorMode()
 	 * after calling this function to set the color mode back to your desired mode.
+	 * Without a PApplet, the color is returned as opaque ARGB.
 	 */
 	public int get() {
-		int comp1value = component1.get();
-		int comp2value = component2.get();
-		int comp3value = component3.get();
+		int comp1value = getComponent(0);
+		int comp2value = getComponent(1);
+		int comp3value = getComponent(2);
+		PApplet parent = applet();
+		if (parent == null) {
+			if (colorMode == RGB)
+				return 0xFF000000 | comp1value << 16 | comp2value << 8 | comp3value;
+			return Color.HSBtoRGB(comp1value / 255f, comp2value / 255f, comp3value / 255f);
+		}
 		parent.colorMode(colorMode, 255, 255, 255);
 		return parent.color(comp1value, comp2value, comp3value);
 	}
 	
+	/* Returns the PApplet used to convert colors: this option's own, or
+	 * else the one of the TextMenu it is in. Null if there is neither.
+	 */
+	private PApplet applet() {
+		if (parent != null)
+			return parent;
+		TextMenu m = menu;
+		return m == null ? null : m.getApplet();
+	}
+
 	/* Implementation of MenuItem.action().
-	 * Performs some action on a keypress and returns true iff it did something.
-	 * 
-	 * On keys ENTER, RETURN, or RIGHT ARROW, the color menu is entered,
-	 * displaying the three components and a back button.
+	 * Performs some action on a keypress and returns true iff it did something,
+	 * using the standard keymap.
 	 */
 	protected boolean action(char key, int keyCode) {
-		return colorMenu.action(key, keyCode);
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * 
+	 * On ENTER or INCREMENT (ENTER, RETURN, or RIGHT ARROW in the standard
+	 * keymap), the color menu is entered, displaying the three components
+	 * and a back button.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == MenuCommand.ENTER || command == MenuCommand.INCREMENT) {
+			return colorMenu().command(command, key, keyCode);
+		}
+		return false;
 	}
 	
 	/* Implementation of MenuItem.toString().
@@ -134,7 +232,73 @@ public class ColorOption extends MenuItem {
 	/* Set the menu field of colorMenu. Used internally
 	 * for initialization.
 	 */
-	protected void setMenu(TextMenu menu) {
-		colorMenu.setMenu(menu);
+	protected void setMenu(TextMenu menuSet) {
+		menu = menuSet;
+		if (colorMenu != null)
+			colorMenu.setMenu(menuSet);
+	}
+
+	/* Set the SubMenu containing this option, which colorMenu goes back
+	 * to. Used internally when this option is added or removed.
+	 */
+	protected void setSuperMenu(SubMenu superMenuSet) {
+		superMenu = superMenuSet;
+		if (colorMenu != null)
+			colorMenu.superMenu = superMenuSet;
+	}
+
+	/* Returns the submenu holding this color's components, creating it
+	 * the first time it is needed. The component values move from this
+	 * option into the new IntegerOptions, which start at the color's
+	 * defaults so they can be reset to them. colorMenu is only set once
+	 * they hold the current values.
+	 */
+	protected SubMenu colorMenu() {
+		SubMenu existing = colorMenu;
+		if (existing != null)
+			return existing;
+		synchronized (this) {
+			if (colorMenu != null)
+				return colorMenu;
+			String[] names = colorMode == RGB ? RGB_NAMES : HSB_NAMES;
+			component1 = new Component(names[0], defaults >> 16 & 0xFF);
+			component2 = new Component(names[1], defaults >> 8 & 0xFF);
+			component3 = new Component(names[2], defaults & 0xFF);
+			component1.set(value1);
+			component2.set(value2);
+			component3.set(value3);
+
+			SubMenu created = new SubMenu(null, name + " menu");
+			created.add(component3, component2, component1);
+			created.superMenu = superMenu;
+			created.setMenu(menu);
+			colorMenu = created;
+		}
+		return colorMenu;
+	}
+
+	/* IntegerOption for one component of the color, which reports its
+	 * changes as changes to the color.
+	 */
+	private class Component extends IntegerOption {
+
+		/* Constructor. valInit is the component's default value. */
+		Component(String nameInit, int valInit) {
+			super(null, nameInit, valInit, 0, 255);
+		}
+
+		/* Override of MenuItem.changed(). Reports the change as a change
+		 * to the ColorOption this component belongs to. Nothing is reported
+		 * while colorMenu() moves the current values into the components,
+		 * since the color itself does not change.
+		 */
+		protected void changed(double oldValue, double newValue) {
+			if (colorMenu == null)
+				return;
+			int shift = this == component1 ? 16 : this == component2 ? 8 : 0;
+			int newColor = packed();
+			int oldColor = newColor & ~(0xFF << shift) | (int)oldValue << shift;
+			ColorOption.this.changed(oldColor, newColor);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package menu;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+
+/* A set of dependencies between MenuItems. Each dependency is a Rule that
+ * updates one target item from the values of one or more source items,
+ * for example keeping the max of one IntegerOption equal to the value of
+ * another, or enabling a SubMenu only while a ToggleableOption is true:
+ *
+ *   graph.depend(count, () -> count.setMax(limit.get()), limit);
+ *   graph.depend(sub, () -> sub.setEnabled(toggle.get()), toggle);
+ *
+ * When a source item changes, only the items downstream of it are updated,
+ * each once, in dependency order. Rules should only change their own target.
+ * An item may be part of at most one DependencyGraph.
+ */
+public class DependencyGraph {
+
+	/* Updates a target item from the items it depends on. */
+	public interface Rule {
+		void update();
+	}
+
+	// An item in the graph along with its edges and rules.
+	private static class Node {
+		// The item this node is for.
+		final MenuItem item;
+		// Nodes whose rules read this node's item.
+		final ArrayList<Node> dependents;
+		// Rules that update this node's item.
+		final ArrayList<Rule> rules;
+		// Position of this node in the dependency order.
+		int rank;
+
+		Node(MenuItem itemInit) {
+			item = itemInit;
+			dependents = new ArrayList<>();
+			rules = new ArrayList<>();
+		}
+	}
+
+	// Node for each item in the graph.
+	private final IdentityHashMap<MenuItem, Node> nodes;
+
+	// All nodes, sorted so every node comes after the nodes it depends on.
+	private ArrayList<Node> order;
+
+	// Ranks of the nodes that need their rules run.
+	private final BitSet dirty;
+
+	// Is a change currently being propagated?
+	private boolean propagating;
+
+	/* Constructor. Creates an empty graph. */
+	public DependencyGraph() {
+		nodes = new IdentityHashMap<>();
+		order = new ArrayList<>();
+		dirty = new BitSet();
+		propagating = false;
+	}
+
+	/* Make target depend on the given sources. rule is run once now and
+	 * again whenever any of the sources change. Throws an exception if
+	 * this would create a cycle, leaving the graph unchanged.
+	 */
+	public void depend(MenuItem target, Rule rule, MenuItem... sources) {
+		if (target == null || rule == null) {
+			throw new IllegalArgumentException("Target and rule must not be null.");
+		}
+		for (MenuItem source : sources) {
+			checkGraph(source);
+		}
+		checkGraph(target);
+
+		int oldSize = order.size();
+		Node targetNode = node(target);
+		ArrayList<Node> added = new ArrayList<>();
+		for (MenuItem source : sources) {
+			Node sourceNode = node(source);
+			if (!sourceNode.dependents.contains(targetNode)) {
+				sourceNode.dependents.add(targetNode);
+				added.add(sourceNode);
+			}
+		}
+		if (!sort()) {
+			// Undo the new edges and the nodes created for them. New
+			// nodes are still at the end of the order, since it is only
+			// changed by a successful sort.
+			for (Node sourceNode : added) {
+				sourceNode.dependents.remove(targetNode);
+			}
+			while (order.size() > oldSize) {
+				Node n = order.remove(order.size() - 1);
+				nodes.remove(n.item);
+				n.item.graph = null;
+			}
+			throw new IllegalArgumentException("Dependency on " + target.name + " would create a cycle.");
+		}
+
+		targetNode.rules.add(rule);
+		dirty.set(targetNode.rank);
+		propagate();
+	}
+
+	/* Remove an item from this graph along with every rule that updates
+	 * it and every dependency on it. Returns true iff it was in the graph.
+	 */
+	public boolean remove(MenuItem item) {
+		Node removed = nodes.remove(item);
+		if (removed == null) {
+			return false;
+		}
+		for (Node n : nodes.values()) {
+			n.dependents.remove(removed);
+		}
+		item.graph = null;
+		sort();
+		return true;
+	}
+
+	/* Returns true iff the item is part of this graph. */
+	public boolean contains(MenuItem item) {
+		return nodes.containsKey(item);
+	}
+
+	/* Run the rules of an item and update everything downstream of it,
+	 * as if one of its sources had changed.
+	 */
+	public void update(MenuItem item) {
+		Node n = nodes.get(item);
+		if (n != null) {
+			dirty.set(n.rank);
+			propagate();
+		}
+	}
+
+	/* Called by MenuItem.changed() when an item in this graph changes.
+	 * Marks the item's dependents to be updated and updates them, unless
+	 * a change is already being propagated, in which case they are updated
+	 * later in the same pass.
+	 */
+	void changed(MenuItem source) {
+		Node n = nodes.get(source);
+		if (n == null) {
+			return;
+		}
+		for (Node dependent : n.dependents) {
+			dirty.set(dependent.rank);
+		}
+		propagate();
+	}
+
+	/* Run the rules of every marked node in dependency order, marking the
+	 * dependents of each node whose rules ran. A rule may change its target
+	 * without a change in value, such as setMax() leaving the value alone
+	 * or setEnabled(), so dependents are updated whether or not the target
+	 * reported a change. Nodes that become marked along the way always
+	 * come later in the order, so each node is updated at most once.
+	 */
+	private void propagate() {
+		if (propagating) {
+			return;
+		}
+		propagating = true;
+		try {
+			for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+				dirty.clear(i);
+				Node n = order.get(i);
+				for (Rule rule : n.rules) {
+					rule.update();
+				}
+				for (Node dependent : n.dependents) {
+					dirty.set(dependent.rank);
+				}
+			}
+		} finally {
+			dirty.clear();
+			propagating = false;
+		}
+	}
+
+	/* Returns the node for an item, adding it to the graph if needed. */
+	private Node node(MenuItem item) {
+		Node n = nodes.get(item);
+		if (n == null) {
+			n = new Node(item);
+			n.rank = order.size();
+			nodes.put(item, n);
+			order.add(n);
+			item.graph = this;
+		}
+		return n;
+	}
+
+	/* Throw an exception if an item belongs to a different graph. */
+	private void checkGraph(MenuItem item) {
+		if (item == null) {
+			throw new IllegalArgumentException("Items must not be null.");
+		} else if (item.graph != null && item.graph != this) {
+			throw new IllegalStateException(item.name + " is already part of another DependencyGraph.");
+		}
+	}
+
+	/* Recompute the dependency order and ranks of all nodes.
+	 * Returns false if the graph has a cycle, in which case the order
+	 * is left unchanged.
+	 */
+	private boolean sort() {
+		IdentityHashMap<Node, Integer> inDegree = new IdentityHashMap<>();
+		for (Node n : nodes.values()) {
+			inDegree.put(n, 0);
+		}
+		for (Node n : nodes.values()) {
+			for (Node d : n.dependents) {
+				inDegree.put(d, inDegree.get(d) + 1);
+			}
+		}
+
+		ArrayList<Node> sorted = new ArrayList<>(nodes.size());
+		for (Node n : order) {
+			if (nodes.containsKey(n.item) && inDegree.get(n) == 0) {
+				sorted.add(n);
+			}
+		}
+		for (int i = 0; i < sorted.size(); i++) {
+			for (Node d : sorted.get(i).dependents) {
+				int remaining = inDegree.get(d) - 1;
+				inDegree.put(d, remaining);
+				if (remaining == 0) {
+					sorted.add(d);
+				}
+			}
+		}
+		if (sorted.size() != nodes.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < sorted.size(); i++) {
+			sorted.get(i).rank = i;
+		}
+		order = sorted;
+		return true;
+	}
+}
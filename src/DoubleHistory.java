@@ -0,0 +1,57 @@
+package menu;
+
+/* The recent values of a DoubleOption, stored in a double[] ring buffer.
+ * See ValueHistory.
+ */
+public class DoubleHistory extends ValueHistory {
+
+	// The option whose values are stored.
+	private final DoubleOption option;
+
+	// The ring buffer.
+	private final double[] values;
+
+	/* Constructor. Use DoubleOption.track() or TextMenu.trackEachFrame(). */
+	DoubleHistory(DoubleOption optionInit, int capacityInit, boolean eachFrameInit) {
+		super(capacityInit, eachFrameInit);
+		option = optionInit;
+		values = new double[capacityInit];
+	}
+
+	/* Returns a stored sample as a double. Index 0 is the oldest sample. */
+	public double getDouble(int index) {
+		return values[slot(index)];
+	}
+
+	/* Implementation of ValueHistory.value(). */
+	public double value(int index) {
+		return values[slot(index)];
+	}
+
+	/* Implementation of ValueHistory.getOption(). */
+	public DoubleOption getOption() {
+		return option;
+	}
+
+	/* Store a sample. */
+	void add(double value) {
+		values[next] = value;
+		advance();
+	}
+
+	/* Implementation of ValueHistory.sample(). */
+	void sample() {
+		add(option.get());
+	}
+
+	/* Implementation of ValueHistory.isTracking(). */
+	boolean isTracking() {
+		return option.getHistory() == this;
+	}
+
+	/* Implementation of ValueHistory.footprint(). */
+	long footprint() {
+		return MenuFootprint.shallowSize(DoubleHistory.class)
+				+ MenuFootprint.align(MenuFootprint.ARRAY_HEADER + 8L * values.length);
+	}
+}
@@ -15,12 +15,15 @@ public class DoubleOption extends MenuItem {
 	static final double INCR_BIG = 1;
 
 	// The current value of this option
-	private double value;
+	private volatile double value;
 	// The minimum and maximum values
-	private final double min, max;
+	private double min, max;
 	// initial value of the option to be used as a default when reset
 	private final double defaultValue;
 
+	// History of the values of this option, or null if none is kept.
+	private volatile DoubleHistory history;
+
 	/* Constructor.
 	 * nameInit is the name of the option, valueInit is the initial (or default) value,
 	 * minInit and maxInit are the minimum and maximum of the value. This option's
@@ -42,40 +45,53 @@ public class DoubleOption extends MenuItem {
 	}
 
 	/* Implementation of MenuItem.action().
-	 * Perform some action on keypress and return true iff it did anything.
+	 * Perform some action on keypress and return true iff it did anything,
+	 * using the standard keymap.
+	 */
+	protected boolean action(char key, int keyCode) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
 	 * 
-	 * Available actions on a DoubleOption:
-	 * LEFT ARROW and RIGHT ARROW: decrement or increment the value by one
-	 * , and . : decrement or increment the value by 0.1
-	 * < and > : decrement or increment the value by 0.01
-	 * - and = : set the value to its min or its max, respectively
-	 * ENTER/RETURN: reset the value to its initial/default value
-	 * Forward Slash (/): round the value to the nearest integer.
+	 * Available actions on a DoubleOption, with their standard keys:
+	 * DECREMENT and INCREMENT (LEFT ARROW and RIGHT ARROW): decrement or
+	 * increment the value by one
+	 * DECREMENT_FINE and INCREMENT_FINE (, and .): by 0.1
+	 * DECREMENT_FINER and INCREMENT_FINER (< and >): by 0.01
+	 * MIN and MAX (- and =): set the value to its min or its max, respectively
+	 * ENTER or RESET (ENTER/RETURN): reset the value to its initial/default value
+	 * ROUND (Forward Slash /): round the value to the nearest integer.
 	 * (if fractional part is 0.5, rounds up)
 	 */
-	protected boolean action(char key, int keyCode) {
-		if (key == CODED) {
-			if (keyCode == RIGHT)
-				return add(INCR_BIG);
-			else if (keyCode == LEFT)
-				return add(-INCR_BIG);
-		} else if (key == ENTER || key == RETURN)
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == null)
+			return false;
+		switch (command) {
+		case INCREMENT:
+			return add(INCR_BIG);
+		case DECREMENT:
+			return add(-INCR_BIG);
+		case INCREMENT_FINE:
+			return add(INCR_MED);
+		case DECREMENT_FINE:
+			return add(-INCR_MED);
+		case INCREMENT_FINER:
+			return add(INCR_SMALL);
+		case DECREMENT_FINER:
+			return add(-INCR_SMALL);
+		case ENTER:
+		case RESET:
 			return set(defaultValue);
-		else if (key == '-')
+		case MIN:
 			return set(min);
-		else if (key == '=')
+		case MAX:
 			return set(max);
-		else if (key == ',')
-			return add(-INCR_MED);
-		else if (key == '.')
-			return add(INCR_MED);
-		else if (key == '<')
-			return add(-INCR_SMALL);
-		else if (key == '>')
-			return add(INCR_SMALL);
-		else if (key == '/')
+		case ROUND:
 			return roundValue();
-		return false;
+		default:
+			return false;
+		}
 	}
 
 	/* Returns the current value of this option. */
@@ -86,8 +102,87 @@ public class DoubleOption extends MenuItem {
 	/* Set the value of this option and return true iff the value changed. */
 	public boolean set(double toSet) {
 		double oldValue = value;
-		value = Math.max(Math.min(toSet, max), min);
-		return oldValue != value;
+		double newValue = Math.max(Math.min(toSet, max), min);
+		value = newValue;
+		if (oldValue != newValue) {
+			DoubleHistory h = history;
+			if (h != null && !h.eachFrame)
+				h.add(newValue);
+			changed(oldValue, newValue);
+			return true;
+		}
+		return false;
+	}
+
+	/* Keep the last capacity values of this option, stored whenever the
+	 * value changes, and show them as a sparkline next to it in the menu.
+	 * Replaces any history kept before. Returns the new history, which
+	 * starts with the current value.
+	 */
+	public DoubleHistory track(int capacity) {
+		return track(capacity, false);
+	}
+
+	/* Keep a history of this option's values, sampled each frame if
+	 * eachFrame is true and on change otherwise.
+	 */
+	DoubleHistory track(int capacity, boolean eachFrame) {
+		DoubleHistory h = new DoubleHistory(this, capacity, eachFrame);
+		h.add(value);
+		history = h;
+		return h;
+	}
+
+	/* Stop keeping a history of this option's values. */
+	public void untrack() {
+		history = null;
+	}
+
+	/* Returns the history of this option's values, or null if none is kept. */
+	public DoubleHistory getHistory() {
+		return history;
+	}
+
+	/* Implementation of MenuItem.history(). */
+	ValueHistory history() {
+		return history;
+	}
+
+	/* Returns the minimum value of this option. */
+	public double getMin() {
+		return min;
+	}
+
+	/* Returns the maximum value of this option. */
+	public double getMax() {
+		return max;
+	}
+
+	/* Set the bounds of this option. If the current value is outside of
+	 * the new bounds, it is moved to the nearest one.
+	 * Returns true iff the value changed as a result.
+	 */
+	public boolean setRange(double minSet, double maxSet) {
+		if (maxSet < minSet) {
+			throw new IllegalArgumentException("Max cannot be smaller than min.");
+		}
+		min = minSet;
+		max = maxSet;
+		return set(value);
+	}
+
+	/* Set the minimum value of this option. The maximum is raised to
+	 * match if it would be smaller. Returns true iff the value changed.
+	 */
+	public boolean setMin(double minSet) {
+		return setRange(minSet, Math.max(minSet, max));
+	}
+
+	/* Set the maximum value of this option. The minimum is lowered to
+	 * match if it would be larger. Returns true iff the value changed.
+	 */
+	public boolean setMax(double maxSet) {
+		return setRange(Math.min(maxSet, min), maxSet);
 	}
 
 	/* Increment the value by some amount. May be negative. 
@@ -102,8 +197,6 @@ public class DoubleOption extends MenuItem {
 	 * rounded up.
 	 */
 	public boolean roundValue() {
-		double oldValue = value;
-		value = Math.round((float)value);
-		return oldValue != value;
+		return set(Math.round((float)value));
 	}
 }
\ No newline at end of file
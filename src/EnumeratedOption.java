@@ -12,7 +12,7 @@ public class EnumeratedOption extends MenuItem {
 	private String[] options;
 
 	// Index of current value in the options array.
-	private int selected;
+	private volatile int selected;
 	
 	// Initial or default value. Used if this option is reset.
 	private int defaultIndex;
@@ -41,31 +41,47 @@ public class EnumeratedOption extends MenuItem {
 	}
 
 	/* Implementation of MenuItem.action().
-	 * Performs some action on key press and returns true iff the value changed.
-	 * 
-	 * Available actions on an EnumeratedOption:
-	 * LEFT ARROW and RIGHT ARROW: scroll through possible options, wrapping
-	 * around as necessary.
-	 * ENTER/RETURN: reset this option to its default.
-	 * - and = : set this option to the first or last value in the array this
-	 * option was initialized with.
+	 * Performs some action on key press and returns true iff the value changed,
+	 * using the standard keymap.
 	 */
 	protected boolean action(char key, int keyCode) {
-		if (key == CODED && keyCode == LEFT) {
-			selected = (selected + 1) % options.length;
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * 
+	 * Available actions on an EnumeratedOption, with their standard keys:
+	 * DECREMENT and INCREMENT (LEFT ARROW and RIGHT ARROW): scroll through
+	 * possible options, wrapping around as necessary.
+	 * ENTER or RESET (ENTER/RETURN): reset this option to its default.
+	 * MIN and MAX (- and =): set this option to the first or last value in
+	 * the array this option was initialized with.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == null)
+			return false;
+		switch (command) {
+		case DECREMENT:
+			set((selected + 1) % options.length);
 			return true;
-		} else if (key == CODED && keyCode == RIGHT) {
-			selected--;
-			if (selected < 0) selected = options.length - 1;
+		case INCREMENT:
+			set(selected == 0 ? options.length - 1 : selected - 1);
 			return true;
-		} else if (key == ENTER || key == RETURN) {
+		case ENTER:
+		case RESET:
 			return set(defaultIndex);
-		} else if (key == '-') {
+		case MIN:
 			return set(0);
-		} else if (key == '=') {
+		case MAX:
 			return set(options.length - 1);
+		default:
+			return false;
 		}
-		return false;
+	}
+
+	/* Returns the number of possible values of this option. */
+	public int size() {
+		return options.length;
 	}
 
 	/* Get the index of the current value of this option.
@@ -81,10 +97,14 @@ public class EnumeratedOption extends MenuItem {
 	 * is out of bounds. Returns true iff the selected item changed.
 	 */
 	public boolean set (int index) {
-		if (index < 0 || index > options.length)
+		if (index < 0 || index >= options.length)
 			throw new IllegalArgumentException ("Invalid index.");
-		boolean result = selected != index;
+		int oldIndex = selected;
+		boolean result = oldIndex != index;
 		selected = index;
+		if (result) {
+			changed(oldIndex, index);
+		}
 		return result;
 	}
 }
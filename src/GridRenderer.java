@@ -0,0 +1,182 @@
+package menu;
+
+import java.util.Arrays;
+
+/* A MenuRenderer that draws into a grid of characters, for showing a menu
+ * in a terminal or checking its layout without a window. Every character
+ * is one unit wide and one unit tall with no space between lines, so the
+ * menu's location is given in columns and rows: a menu at (0, rows) has its
+ * bottom line in the last row of the grid. Highlighted cells are remembered
+ * and shown in reverse video by toAnsi(). Sparklines are drawn with block
+ * characters, one sample per column.
+ */
+public class GridRenderer implements MenuRenderer {
+
+	// Block characters for sparklines, from lowest to highest.
+	private static final char[] BLOCKS = "\u2581\u2582\u2583\u2584\u2585\u2586\u2587\u2588".toCharArray();
+
+	// Size of the grid.
+	private final int cols, rows;
+
+	// Characters in each cell, row by row.
+	private final char[][] cells;
+
+	// Which cells are covered by a highlight box.
+	private final boolean[][] highlighted;
+
+	/* Constructor. Creates an empty grid with the given size. */
+	public GridRenderer(int colsInit, int rowsInit) {
+		if (colsInit <= 0 || rowsInit <= 0) {
+			throw new IllegalArgumentException("Grid must have at least one row and column.");
+		}
+		cols = colsInit;
+		rows = rowsInit;
+		cells = new char[rows][cols];
+		highlighted = new boolean[rows][cols];
+		clear();
+	}
+
+	/* Fill the grid with spaces and remove all highlights. */
+	public void clear() {
+		for (int r = 0; r < rows; r++) {
+			Arrays.fill(cells[r], ' ');
+			Arrays.fill(highlighted[r], false);
+		}
+	}
+
+	/* Returns the character at a cell. */
+	public char charAt(int col, int row) {
+		return cells[row][col];
+	}
+
+	/* Returns true iff a cell is covered by a highlight box. */
+	public boolean isHighlighted(int col, int row) {
+		return highlighted[row][col];
+	}
+
+	/* Returns one row of the grid, without trailing spaces. */
+	public String row(int row) {
+		int end = cols;
+		while (end > 0 && cells[row][end - 1] == ' ')
+			end--;
+		return new String(cells[row], 0, end);
+	}
+
+	/* Returns the whole grid, one line per row, without trailing spaces. */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < rows; r++) {
+			if (r > 0)
+				sb.append('\n');
+			sb.append(row(r));
+		}
+		return sb.toString();
+	}
+
+	/* Returns the whole grid with highlighted cells in reverse video,
+	 * using ANSI escape codes, for printing to a terminal.
+	 */
+	public String toAnsi() {
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < rows; r++) {
+			boolean inverse = false;
+			for (int c = 0; c < cols; c++) {
+				if (highlighted[r][c] != inverse) {
+					inverse = highlighted[r][c];
+					sb.append(inverse ? "\u001b[7m" : "\u001b[0m");
+				}
+				sb.append(cells[r][c]);
+			}
+			if (inverse)
+				sb.append("\u001b[0m");
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/* Implementation of MenuRenderer.begin(). Clears the grid. */
+	public void begin() {
+		clear();
+	}
+
+	/* Implementation of MenuRenderer.end(). Does nothing. */
+	public void end() {
+	}
+
+	/* Implementation of MenuRenderer.textAscent(). Text is one row tall. */
+	public float textAscent() {
+		return 1;
+	}
+
+	/* Implementation of MenuRenderer.textDescent(). */
+	public float textDescent() {
+		return 0;
+	}
+
+	/* Implementation of MenuRenderer.textWidth(). Each character is one column. */
+	public float textWidth(char c) {
+		return 1;
+	}
+
+	/* Implementation of MenuRenderer.lineSpacing(). Lines are adjacent. */
+	public float lineSpacing() {
+		return 0;
+	}
+
+	/* Implementation of MenuRenderer.fill(). Colors are ignored. */
+	public void fill(int color) {
+	}
+
+	/* Implementation of MenuRenderer.rect().
+	 * Marks the cells covered by the rectangle as highlighted.
+	 */
+	public void rect(float x, float y, float w, float h) {
+		int r1 = Math.max((int)Math.floor(y), 0);
+		int r2 = Math.min((int)Math.ceil(y + h), rows);
+		int c1 = Math.max((int)Math.floor(x), 0);
+		int c2 = Math.min((int)Math.ceil(x + w), cols);
+		for (int r = r1; r < r2; r++) {
+			for (int c = c1; c < c2; c++) {
+				highlighted[r][c] = true;
+			}
+		}
+	}
+
+	/* Implementation of MenuRenderer.text().
+	 * Writes the text into the row above the baseline, clipped to the grid.
+	 */
+	public void text(String s, float x, float y) {
+		int r = (int)Math.floor(y) - 1;
+		if (r < 0 || r >= rows)
+			return;
+		int c = (int)Math.floor(x);
+		for (int i = 0; i < s.length(); i++, c++) {
+			if (c >= 0 && c < cols)
+				cells[r][c] = s.charAt(i);
+		}
+	}
+
+	/* Implementation of MenuRenderer.sparkline().
+	 * Writes one block character per sample into the row at y, with the
+	 * newest sample in the last column of the box.
+	 */
+	public void sparkline(ValueHistory history, float x, float y, float w, float h) {
+		int r = (int)Math.floor(y);
+		int n = Math.min(history.size(), (int)w);
+		if (r < 0 || r >= rows || n <= 0)
+			return;
+		int first = history.size() - n;
+		double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+		for (int i = first; i < history.size(); i++) {
+			double v = history.value(i);
+			lo = Math.min(lo, v);
+			hi = Math.max(hi, v);
+		}
+		int c = (int)Math.floor(x) + (int)w - n;
+		for (int i = first; i < history.size(); i++, c++) {
+			int level = hi > lo ? (int)((history.value(i) - lo) / (hi - lo) * (BLOCKS.length - 1) + 0.5) : BLOCKS.length / 2 - 1;
+			if (c >= 0 && c < cols)
+				cells[r][c] = BLOCKS[level];
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package menu;
+
+/* The recent values of an IntegerOption, stored in an int[] ring buffer.
+ * See ValueHistory.
+ */
+public class IntHistory extends ValueHistory {
+
+	// The option whose values are stored.
+	private final IntegerOption option;
+
+	// The ring buffer.
+	private final int[] values;
+
+	/* Constructor. Use IntegerOption.track() or TextMenu.trackEachFrame(). */
+	IntHistory(IntegerOption optionInit, int capacityInit, boolean eachFrameInit) {
+		super(capacityInit, eachFrameInit);
+		option = optionInit;
+		values = new int[capacityInit];
+	}
+
+	/* Returns a stored sample as an int. Index 0 is the oldest sample. */
+	public int getInt(int index) {
+		return values[slot(index)];
+	}
+
+	/* Implementation of ValueHistory.value(). */
+	public double value(int index) {
+		return values[slot(index)];
+	}
+
+	/* Implementation of ValueHistory.getOption(). */
+	public IntegerOption getOption() {
+		return option;
+	}
+
+	/* Store a sample. */
+	void add(int value) {
+		values[next] = value;
+		advance();
+	}
+
+	/* Implementation of ValueHistory.sample(). */
+	void sample() {
+		add(option.get());
+	}
+
+	/* Implementation of ValueHistory.isTracking(). */
+	boolean isTracking() {
+		return option.getHistory() == this;
+	}
+
+	/* Implementation of ValueHistory.footprint(). */
+	long footprint() {
+		return MenuFootprint.shallowSize(IntHistory.class)
+				+ MenuFootprint.align(MenuFootprint.ARRAY_HEADER + 4L * values.length);
+	}
+}
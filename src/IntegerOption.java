@@ -12,13 +12,16 @@ import processing.core.*;
 public class IntegerOption extends MenuItem {
 
 	// The current value of this option
-	private int value;
+	private volatile int value;
 
 	// The initial value of this option, so it can be reset
 	private final int defaultValue;
 
 	// Upper and lower bounds on the value of this option
-	private final int max, min;
+	private int max, min;
+
+	// History of the values of this option, or null if none is kept.
+	private volatile IntHistory history;
 
 	/* Constructor.
 	 * nameInit is the name of this option.
@@ -47,29 +50,39 @@ public class IntegerOption extends MenuItem {
 	}
 
 	/* Implementation of MenuItem.action().
-	 * Perform an action on key input when this option is selected.
-	 * 
-	 * right arrow: increments value by 1
-	 * left arrow: decrements value by 1
-	 * enter/return: resets option to initial value
-	 * dash/minus (-): sets option to the minimum
-	 * equals sign (=): sets option to the maximum
+	 * Perform an action on key input when this option is selected,
+	 * using the standard keymap.
 	 */
 	protected boolean action(char key, int keyCode) {
-		if (key == CODED) {
-			if (keyCode == RIGHT) {
-				return add(1);
-			} else if (keyCode == LEFT) {
-				return add(-1);
-			}
-		} else if (key == ENTER || key == RETURN) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * 
+	 * INCREMENT (right arrow): increments value by 1
+	 * DECREMENT (left arrow): decrements value by 1
+	 * ENTER or RESET (enter/return): resets option to initial value
+	 * MIN (dash/minus -): sets option to the minimum
+	 * MAX (equals sign =): sets option to the maximum
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == null)
+			return false;
+		switch (command) {
+		case INCREMENT:
+			return add(1);
+		case DECREMENT:
+			return add(-1);
+		case ENTER:
+		case RESET:
 			return set(defaultValue);
-		} else if (key == '-') {
+		case MIN:
 			return set(min);
-		} else if (key == '=') {
+		case MAX:
 			return set(max);
+		default:
+			return false;
 		}
-		return false;
 	}
 
 	/* Returns the current value of this option. */
@@ -82,8 +95,87 @@ public class IntegerOption extends MenuItem {
 	 */
 	public boolean set(int toSet) {
 		int oldValue = value;
-		value = Math.max(Math.min(toSet, max), min);
-		return oldValue != value;
+		int newValue = Math.max(Math.min(toSet, max), min);
+		value = newValue;
+		if (oldValue != newValue) {
+			IntHistory h = history;
+			if (h != null && !h.eachFrame)
+				h.add(newValue);
+			changed(oldValue, newValue);
+			return true;
+		}
+		return false;
+	}
+
+	/* Keep the last capacity values of this option, stored whenever the
+	 * value changes, and show them as a sparkline next to it in the menu.
+	 * Replaces any history kept before. Returns the new history, which
+	 * starts with the current value.
+	 */
+	public IntHistory track(int capacity) {
+		return track(capacity, false);
+	}
+
+	/* Keep a history of this option's values, sampled each frame if
+	 * eachFrame is true and on change otherwise.
+	 */
+	IntHistory track(int capacity, boolean eachFrame) {
+		IntHistory h = new IntHistory(this, capacity, eachFrame);
+		h.add(value);
+		history = h;
+		return h;
+	}
+
+	/* Stop keeping a history of this option's values. */
+	public void untrack() {
+		history = null;
+	}
+
+	/* Returns the history of this option's values, or null if none is kept. */
+	public IntHistory getHistory() {
+		return history;
+	}
+
+	/* Implementation of MenuItem.history(). */
+	ValueHistory history() {
+		return history;
+	}
+
+	/* Returns the minimum value of this option. */
+	public int getMin() {
+		return min;
+	}
+
+	/* Returns the maximum value of this option. */
+	public int getMax() {
+		return max;
+	}
+
+	/* Set the bounds of this option. If the current value is outside of
+	 * the new bounds, it is moved to the nearest one.
+	 * Returns true iff the value changed as a result.
+	 */
+	public boolean setRange(int minSet, int maxSet) {
+		if (maxSet < minSet) {
+			throw new IllegalArgumentException("Max cannot be smaller than min.");
+		}
+		min = minSet;
+		max = maxSet;
+		return set(value);
+	}
+
+	/* Set the minimum value of this option. The maximum is raised to
+	 * match if it would be smaller. Returns true iff the value changed.
+	 */
+	public boolean setMin(int minSet) {
+		return setRange(minSet, Math.max(minSet, max));
+	}
+
+	/* Set the maximum value of this option. The minimum is lowered to
+	 * match if it would be larger. Returns true iff the value changed.
+	 */
+	public boolean setMax(int maxSet) {
+		return setRange(Math.min(maxSet, min), maxSet);
 	}
 
 	/* Increment the value of this option by some amount. If toAdd is
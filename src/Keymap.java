@@ -0,0 +1,228 @@
+package menu;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import processing.core.*;
+
+/* A mapping from keys to MenuCommands. Bindings are stored directly in
+ * two lookup tables indexed by key, one for characters and one for coded
+ * keys such as the arrow keys, so finding the command for a key press takes
+ * constant time no matter how many keys are bound. Only characters and key
+ * codes below 256 can be bound. Each key is bound to at most one command,
+ * but a command may have any number of keys.
+ *
+ * Bindings can be loaded from a text file with one command per line,
+ * followed by '=' and the keys bound to it, separated by spaces:
+ *
+ *   # Use WASD as well as the arrow keys.
+ *   UP = UP w
+ *   DOWN = DOWN s
+ *   INCREMENT = RIGHT d
+ *   DECREMENT = LEFT a
+ *   NONE = /
+ *
+ * A key is either a single character, one of the names UP, DOWN, LEFT,
+ * RIGHT (coded keys), ENTER, RETURN, BACKSPACE, TAB, ESC, DELETE, SPACE,
+ * or code:N for the coded key with keyCode N. Binding keys to NONE unbinds
+ * them. Lines starting with '#' are ignored.
+ */
+public class Keymap implements PConstants {
+
+	// Size of the lookup tables. Keys and key codes must be below this.
+	static final int TABLE_SIZE = 256;
+
+	// All commands, indexed by ordinal.
+	private static final MenuCommand[] COMMANDS = MenuCommand.values();
+
+	// The standard bindings, used by MenuItems to interpret keys passed
+	// directly to action(). Never modified after creation.
+	static final Keymap DEFAULT = standard();
+
+	// Command bound to each character and each coded key, stored as the
+	// command's ordinal + 1, or 0 if the key is not bound.
+	private final byte[] keys;
+	private final byte[] codes;
+
+	/* Constructor. Creates a keymap with no bindings. */
+	public Keymap() {
+		keys = new byte[TABLE_SIZE];
+		codes = new byte[TABLE_SIZE];
+	}
+
+	/* Returns a new keymap with the standard bindings:
+	 * UP and DOWN arrows move the selection, RIGHT and LEFT arrows increment
+	 * and decrement, . and , increment and decrement by a smaller step,
+	 * > and < by an even smaller step, - and = set the minimum and maximum,
+	 * / rounds, ENTER and RETURN activate or reset, and BACKSPACE goes back.
+	 */
+	public static Keymap standard() {
+		Keymap k = new Keymap();
+		k.bindCoded(MenuCommand.UP, UP);
+		k.bindCoded(MenuCommand.DOWN, DOWN);
+		k.bindCoded(MenuCommand.INCREMENT, RIGHT);
+		k.bindCoded(MenuCommand.DECREMENT, LEFT);
+		k.bind(MenuCommand.INCREMENT_FINE, '.');
+		k.bind(MenuCommand.DECREMENT_FINE, ',');
+		k.bind(MenuCommand.INCREMENT_FINER, '>');
+		k.bind(MenuCommand.DECREMENT_FINER, '<');
+		k.bind(MenuCommand.MIN, '-');
+		k.bind(MenuCommand.MAX, '=');
+		k.bind(MenuCommand.ROUND, '/');
+		k.bind(MenuCommand.ENTER, ENTER);
+		k.bind(MenuCommand.ENTER, RETURN);
+		k.bind(MenuCommand.BACK, BACKSPACE);
+		return k;
+	}
+
+	/* Returns a new keymap with the same bindings as this one. */
+	public Keymap copy() {
+		Keymap k = new Keymap();
+		System.arraycopy(keys, 0, k.keys, 0, TABLE_SIZE);
+		System.arraycopy(codes, 0, k.codes, 0, TABLE_SIZE);
+		return k;
+	}
+
+	/* Returns the command bound to a key press, or null if the key is not
+	 * bound. key and keyCode are equivalent to the variables of the same
+	 * name in PApplet.
+	 */
+	public MenuCommand lookup(char key, int keyCode) {
+		int b;
+		if (key == CODED) {
+			if (keyCode < 0 || keyCode >= TABLE_SIZE)
+				return null;
+			b = codes[keyCode];
+		} else {
+			if (key >= TABLE_SIZE)
+				return null;
+			b = keys[key];
+		}
+		return b == 0 ? null : COMMANDS[b - 1];
+	}
+
+	/* Bind a character to a command, replacing any command it was bound to.
+	 * If command is null, the character is unbound.
+	 */
+	public void bind(MenuCommand command, char key) {
+		if (key == CODED || key >= TABLE_SIZE) {
+			throw new IllegalArgumentException("Key cannot be bound: " + (int)key);
+		}
+		keys[key] = encode(command);
+	}
+
+	/* Bind a coded key, such as an arrow key, to a command, replacing any
+	 * command it was bound to. If command is null, the key is unbound.
+	 */
+	public void bindCoded(MenuCommand command, int keyCode) {
+		if (keyCode < 0 || keyCode >= TABLE_SIZE) {
+			throw new IllegalArgumentException("Key code cannot be bound: " + keyCode);
+		}
+		codes[keyCode] = encode(command);
+	}
+
+	/* Remove every binding from this keymap. */
+	public void clear() {
+		Arrays.fill(keys, (byte)0);
+		Arrays.fill(codes, (byte)0);
+	}
+
+	/* Add the bindings in a file to this keymap, in the format described
+	 * above. Bindings in the file replace existing bindings for the same
+	 * keys. Returns this keymap.
+	 */
+	public Keymap load(String path) throws IOException {
+		try (Reader r = new FileReader(path)) {
+			return load(r);
+		}
+	}
+
+	/* Add bindings read from r to this keymap, in the format described
+	 * above. Throws an exception naming the line of the first error found,
+	 * in which case no bindings are changed. Returns this keymap.
+	 */
+	public Keymap load(Reader r) throws IOException {
+		Keymap loaded = copy();
+		BufferedReader in = new BufferedReader(r);
+		String line;
+		int lineNumber = 0;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			int eq = line.indexOf('=');
+			if (eq < 0)
+				throw new IllegalArgumentException("Line " + lineNumber + ": expected COMMAND = keys");
+			String name = line.substring(0, eq).trim();
+			MenuCommand command = null;
+			if (!name.equals("NONE")) {
+				try {
+					command = MenuCommand.valueOf(name);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Line " + lineNumber + ": unknown command " + name);
+				}
+			}
+
+			String bound = line.substring(eq + 1).trim();
+			if (bound.isEmpty())
+				continue;
+			for (String token : bound.split("\\s+")) {
+				try {
+					loaded.bindToken(command, token);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+				}
+			}
+		}
+		System.arraycopy(loaded.keys, 0, keys, 0, TABLE_SIZE);
+		System.arraycopy(loaded.codes, 0, codes, 0, TABLE_SIZE);
+		return this;
+	}
+
+	/* Bind the key named by a token from a keymap file to a command. */
+	private void bindToken(MenuCommand command, String token) {
+		if (token.length() == 1) {
+			bind(command, token.charAt(0));
+		} else if (token.equals("UP")) {
+			bindCoded(command, UP);
+		} else if (token.equals("DOWN")) {
+			bindCoded(command, DOWN);
+		} else if (token.equals("LEFT")) {
+			bindCoded(command, LEFT);
+		} else if (token.equals("RIGHT")) {
+			bindCoded(command, RIGHT);
+		} else if (token.equals("ENTER")) {
+			bind(command, ENTER);
+		} else if (token.equals("RETURN")) {
+			bind(command, RETURN);
+		} else if (token.equals("BACKSPACE")) {
+			bind(command, BACKSPACE);
+		} else if (token.equals("TAB")) {
+			bind(command, TAB);
+		} else if (token.equals("ESC")) {
+			bind(command, ESC);
+		} else if (token.equals("DELETE")) {
+			bind(command, DELETE);
+		} else if (token.equals("SPACE")) {
+			bind(command, ' ');
+		} else if (token.startsWith("code:")) {
+			try {
+				bindCoded(command, Integer.parseInt(token.substring(5)));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid key code " + token);
+			}
+		} else {
+			throw new IllegalArgumentException("unknown key " + token);
+		}
+	}
+
+	/* Returns the table entry for a command. */
+	private static byte encode(MenuCommand command) {
+		return command == null ? 0 : (byte)(command.ordinal() + 1);
+	}
+}
@@ -0,0 +1,91 @@
+package menu;
+
+import java.util.function.Supplier;
+
+import processing.core.*;
+
+/* A MenuItem that displays a live value, such as the frame rate or the
+ * number of entities in a scene. The value is computed by a Supplier, but
+ * only once per refresh interval; in between, the last label is reused, so
+ * expensive suppliers are not called every frame.
+ */
+public class LiveItem extends MenuItem {
+
+	// Computes the value to display.
+	private final Supplier<?> supplier;
+
+	// Minimum time between calls to the supplier, in nanoseconds.
+	private long refreshInterval;
+
+	// Time of the last refresh, from System.nanoTime().
+	private long lastRefresh;
+
+	// The label computed on the last refresh, or null if there was none yet.
+	private String label;
+
+	/* Constructor.
+	 * nameInit is the name shown next to the value, supplierInit computes
+	 * the value, and refreshMillis is the minimum number of milliseconds
+	 * between calls to the supplier. A refreshMillis of 0 refreshes the
+	 * value every time it is displayed.
+	 */
+	public LiveItem(PApplet p, String nameInit, Supplier<?> supplierInit, int refreshMillis) {
+		super(p, nameInit);
+		if (supplierInit == null) {
+			throw new IllegalArgumentException("Supplier must not be null.");
+		}
+		supplier = supplierInit;
+		setRefreshInterval(refreshMillis);
+		label = null;
+	}
+
+	/* Set the minimum number of milliseconds between calls to the supplier. */
+	public void setRefreshInterval(int refreshMillis) {
+		if (refreshMillis < 0) {
+			throw new IllegalArgumentException("Refresh interval cannot be negative.");
+		}
+		refreshInterval = refreshMillis * 1000000L;
+	}
+
+	/* Returns the minimum number of milliseconds between calls to the supplier. */
+	public int getRefreshInterval() {
+		return (int)(refreshInterval / 1000000L);
+	}
+
+	/* Call the supplier now and update the label, regardless of when
+	 * it was last refreshed.
+	 */
+	public void refresh() {
+		label = name + " = " + supplier.get();
+		lastRefresh = System.nanoTime();
+	}
+
+	/* Implementation of MenuItem.toString().
+	 * Returns the label from the last refresh, refreshing it first if the
+	 * refresh interval has passed.
+	 */
+	public String toString() {
+		if (label == null || System.nanoTime() - lastRefresh >= refreshInterval) {
+			refresh();
+		}
+		return label;
+	}
+
+	/* Implementation of MenuItem.action().
+	 * Performs some action on a keypress, using the standard keymap.
+	 */
+	protected boolean action(char key, int keyCode) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * ENTER or RESET (ENTER/RETURN): refresh the value immediately.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == MenuCommand.ENTER || command == MenuCommand.RESET) {
+			refresh();
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,25 @@
+package menu;
+
+/* The commands a key can be bound to in a Keymap. TextMenu handles UP and
+ * DOWN itself; the others are passed to the selected MenuItem, which acts on
+ * the ones that make sense for it. BACK also leaves the current SubMenu if
+ * the selected item does not use it.
+ */
+public enum MenuCommand {
+	// Move the selection up or down.
+	UP, DOWN,
+	// Change a value by its largest step, or enter or leave a SubMenu.
+	INCREMENT, DECREMENT,
+	// Change a value by a smaller step.
+	INCREMENT_FINE, DECREMENT_FINE,
+	// Change a value by an even smaller step.
+	INCREMENT_FINER, DECREMENT_FINER,
+	// Set a value to its default, minimum, or maximum.
+	RESET, MIN, MAX,
+	// Round a value to the nearest integer.
+	ROUND,
+	// Activate the selected item, or reset it if it holds a value.
+	ENTER,
+	// Go back to the previous level of the menu.
+	BACK
+}
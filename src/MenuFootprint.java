@@ -0,0 +1,217 @@
+package menu;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* An estimate of the heap memory used by a tree of MenuItems.
+ * Each item is counted with the objects it owns (its name, arrays, and a
+ * SubMenu's item list), grouped by the item's class. Objects shared between
+ * items, such as interned names or the shared back button, are counted once.
+ *
+ * Sizes are estimated for a 64-bit JVM with compressed references:
+ * 12 byte object headers, 16 byte array headers, 4 byte references and
+ * 8 byte alignment. The PApplet and TextMenu are not counted.
+ */
+public class MenuFootprint {
+
+	// Layout constants for the estimate.
+	static final int HEADER = 12;
+	static final int ARRAY_HEADER = 16;
+	static final int REF = 4;
+	static final int ALIGN = 8;
+	// ArrayList object: header, size, modCount and a reference.
+	static final int LIST = 24;
+	// String object: header, hash, coder, hashIsZero and a reference.
+	static final int STRING = 24;
+
+	// Shallow sizes of classes already measured.
+	private static final Map<Class<?>, Integer> shallowSizes = new IdentityHashMap<>();
+
+	// Count and bytes of the items measured, by class.
+	private final Map<Class<?>, long[]> byType;
+
+	// Objects already counted, so shared objects are only counted once.
+	private final IdentityHashMap<Object, Object> seen;
+
+	// Totals over the whole tree.
+	private long totalBytes;
+	private int itemCount;
+
+	/* Constructor. Use measure() to create a footprint. */
+	private MenuFootprint() {
+		byType = new LinkedHashMap<>();
+		seen = new IdentityHashMap<>();
+	}
+
+	/* Measure the tree of items below and including root and return the
+	 * result. Color submenus that have not been created yet are not counted.
+	 */
+	public static MenuFootprint measure(MenuItem root) {
+		MenuFootprint f = new MenuFootprint();
+		f.visit(root);
+		return f;
+	}
+
+	/* Returns the estimated number of bytes used by the whole tree. */
+	public long totalBytes() {
+		return totalBytes;
+	}
+
+	/* Returns the number of items in the tree, counting shared items once. */
+	public int itemCount() {
+		return itemCount;
+	}
+
+	/* Returns the number of items of exactly the given class. */
+	public int count(Class<? extends MenuItem> type) {
+		long[] entry = byType.get(type);
+		return entry == null ? 0 : (int)entry[0];
+	}
+
+	/* Returns the estimated bytes used by items of exactly the given class. */
+	public long bytes(Class<? extends MenuItem> type) {
+		long[] entry = byType.get(type);
+		return entry == null ? 0 : entry[1];
+	}
+
+	/* Returns the average estimated bytes per item of the given class,
+	 * or 0 if the tree has none.
+	 */
+	public double bytesPerItem(Class<? extends MenuItem> type) {
+		long[] entry = byType.get(type);
+		return entry == null ? 0 : (double)entry[1] / entry[0];
+	}
+
+	/* Returns a table with one line per item class and a total line. */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Class<?>, long[]> e : byType.entrySet()) {
+			long[] entry = e.getValue();
+			sb.append(String.format("%-20s %8d items %12d bytes %8.1f bytes/item%n",
+					e.getKey().getSimpleName(), entry[0], entry[1], (double)entry[1] / entry[0]));
+		}
+		sb.append(String.format("%-20s %8d items %12d bytes", "total", itemCount, totalBytes));
+		return sb.toString();
+	}
+
+	/* Count an item, the objects it owns, and any items it contains. */
+	private void visit(MenuItem item) {
+		if (item == null || seen.put(item, item) != null)
+			return;
+
+		long size = shallowSize(item.getClass());
+		for (Class<?> c = item.getClass(); c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(f.getModifiers()) && !f.getType().isPrimitive())
+					size += owned(item, f);
+			}
+		}
+
+		long[] entry = byType.get(item.getClass());
+		if (entry == null) {
+			entry = new long[2];
+			byType.put(item.getClass(), entry);
+		}
+		entry[0]++;
+		entry[1] += size;
+		itemCount++;
+		totalBytes += size;
+
+		if (item instanceof SubMenu) {
+			SubMenu sub = (SubMenu)item;
+			for (int i = 0; i < sub.size(); i++)
+				visit(sub.get(i));
+		} else if (item instanceof ColorOption) {
+			visit(((ColorOption)item).colorMenu);
+		}
+	}
+
+	/* Returns the size of the object held in a reference field if it is
+	 * owned by the item: a String, an array, a value history, or a
+	 * SubMenu's item list.
+	 * Other objects, such as links to menus, are counted on their own.
+	 */
+	private long owned(MenuItem item, Field f) {
+		Object value;
+		try {
+			f.setAccessible(true);
+			value = f.get(item);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return 0;
+		}
+		if (value == null || value instanceof MenuItem || seen.put(value, value) != null)
+			return 0;
+
+		if (value instanceof ValueHistory) {
+			return ((ValueHistory)value).footprint();
+		} else if (value instanceof String) {
+			return stringSize((String)value);
+		} else if (value.getClass().isArray()) {
+			return arraySize(value);
+		} else if (item instanceof SubMenu && f.getName().equals("items")) {
+			return LIST + align(ARRAY_HEADER + (long)REF * ((SubMenu)item).size());
+		}
+		return 0;
+	}
+
+	/* Returns the size of a String and its character array. */
+	private long stringSize(String s) {
+		return STRING + align(ARRAY_HEADER + s.length());
+	}
+
+	/* Returns the size of an array, plus any Strings it holds. */
+	private long arraySize(Object array) {
+		Class<?> type = array.getClass().getComponentType();
+		int length = Array.getLength(array);
+		long size = align(ARRAY_HEADER + (long)length * fieldSize(type));
+		if (type == String.class) {
+			for (String s : (String[])array) {
+				if (s != null && seen.put(s, s) == null)
+					size += stringSize(s);
+			}
+		}
+		return size;
+	}
+
+	/* Returns the size of an object of the given class, not counting
+	 * any objects it refers to.
+	 */
+	static synchronized int shallowSize(Class<?> type) {
+		Integer cached = shallowSizes.get(type);
+		if (cached != null)
+			return cached;
+		long size = HEADER;
+		for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(f.getModifiers()))
+					size += fieldSize(f.getType());
+			}
+		}
+		int result = (int)align(size);
+		shallowSizes.put(type, result);
+		return result;
+	}
+
+	/* Returns the size of a field or array element of the given type. */
+	static int fieldSize(Class<?> type) {
+		if (type == long.class || type == double.class)
+			return 8;
+		else if (type == int.class || type == float.class)
+			return 4;
+		else if (type == short.class || type == char.class)
+			return 2;
+		else if (type == byte.class || type == boolean.class)
+			return 1;
+		else
+			return REF;
+	}
+
+	/* Round a size up to the object alignment. */
+	static long align(long size) {
+		return (size + ALIGN - 1) / ALIGN * ALIGN;
+	}
+}
@@ -10,15 +10,17 @@ import processing.core.*;
 public abstract class MenuItem implements PConstants {
 
 	// Name of this item. May be used for debugging or display purposes.
+	// Names are interned, so items built with the same name share one String.
 	public String name;
+
+	// The dependency graph this item is part of, or null if none.
+	DependencyGraph graph;
 	
-	// Parent PApplet for accessing Processing functions.
-	protected PApplet parent;
-	
-	/* Constructor that sets name and parent. */
+	/* Constructor that sets name. Items do not keep the PApplet; the
+	 * only item that needs one, ColorOption, keeps its own.
+	 */
 	protected MenuItem(PApplet p, String nameInit) {
-		name = nameInit;
-		parent = p;
+		name = nameInit == null ? null : nameInit.intern();
 	}
 
 	/* toString function must be overridden by child classes.
@@ -36,4 +38,43 @@ public abstract class MenuItem implements PConstants {
 	 * menu, so this function will never receive those keys.
 	 */
 	abstract protected boolean action(char key, int keyCode);
+
+	/* Called by TextMenu if a key is pressed while this item is selected,
+	 * with the command the key is bound to in the menu's Keymap, or null if
+	 * it is not bound. Should return true iff this MenuItem performed some
+	 * action as a result. UP and DOWN are never passed to this function.
+	 *
+	 * By default, the key is passed on to action(), so items that only
+	 * implement action() ignore the keymap. The items in this library
+	 * override this function instead, and their action() looks keys up
+	 * in the standard keymap.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		return action(key, keyCode);
+	}
+
+	/* Called by subclasses whenever the value of this item changes, with
+	 * the value before and after the change. Values that are not numbers
+	 * are passed as numbers: booleans as 0 or 1, enumerated values as their
+	 * index, and colors as their three components packed 8 bits each.
+	 * Records the change if a ChangeRecorder is running, and updates any
+	 * items that depend on this one in its DependencyGraph.
+	 */
+	protected void changed(double oldValue, double newValue) {
+		ChangeRecorder recorder = ChangeRecorder.active;
+		if (recorder != null) {
+			recorder.record(this, oldValue, newValue);
+		}
+		if (graph != null) {
+			graph.changed(this);
+		}
+	}
+
+	/* Returns the history of this item's values that TextMenu draws as a
+	 * sparkline, or null if it has none. Only IntegerOption and
+	 * DoubleOption keep histories.
+	 */
+	ValueHistory history() {
+		return null;
+	}
 }
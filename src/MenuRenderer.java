@@ -0,0 +1,65 @@
+package menu;
+
+/* The drawing operations a TextMenu needs in order to draw itself.
+ * TextMenu.draw() only draws through a MenuRenderer, so a menu can be drawn
+ * to the sketch window (PAppletRenderer), to any PGraphics (PGraphicsRenderer),
+ * to a grid of characters (GridRenderer), or nowhere at all (RecordingRenderer).
+ *
+ * Coordinates follow Processing: y grows downward and text is drawn with
+ * its baseline at the given y.
+ */
+public interface MenuRenderer {
+
+	/* Called at the start of every frame in which the menu is drawn. */
+	void begin();
+
+	/* Called at the end of every frame in which the menu is drawn. */
+	void end();
+
+	/* Returns the height of text above the baseline. */
+	float textAscent();
+
+	/* Returns the height of text below the baseline. */
+	float textDescent();
+
+	/* Returns the width of a single character. */
+	float textWidth(char c);
+
+	/* Returns the vertical space left between lines of the menu. */
+	float lineSpacing();
+
+	/* Set the color used by the following calls to rect() and text(). */
+	void fill(int color);
+
+	/* Draw a filled rectangle with its top left corner at (x, y). */
+	void rect(float x, float y, float w, float h);
+
+	/* Draw a line of text with its baseline starting at (x, y). */
+	void text(String s, float x, float y);
+
+	/* Draw the newest samples of a history as a sparkline filling the box
+	 * with its top left corner at (x, y), scaled so the smallest and largest
+	 * samples shown reach the bottom and top of the box. By default each
+	 * sample is drawn as a bar with rect(), one unit wide at most.
+	 * Must not allocate, since it is called every frame.
+	 */
+	default void sparkline(ValueHistory history, float x, float y, float w, float h) {
+		int n = Math.min(history.size(), Math.max((int)w, 1));
+		if (n == 0)
+			return;
+		int first = history.size() - n;
+		double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+		for (int i = first; i < history.size(); i++) {
+			double v = history.value(i);
+			lo = Math.min(lo, v);
+			hi = Math.max(hi, v);
+		}
+		float barWidth = w / n;
+		for (int i = 0; i < n; i++) {
+			double v = history.value(first + i);
+			float barHeight = hi > lo ? (float)((v - lo) / (hi - lo)) * h : h / 2;
+			barHeight = Math.max(barHeight, 1);
+			rect(x + i * barWidth, y + h - barHeight, barWidth, barHeight);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package menu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import processing.core.*;
+
+/* A SubMenu of options that is shared by many objects, such as the
+ * entities of a scene that each have their own speed, size, and color.
+ * The options (their names, bounds, defaults, and order) exist once, in
+ * the template. Each object gets a TemplateInstance, which only stores the
+ * values that differ from the defaults, so creating an instance is cheap
+ * and memory grows with the number of changed values rather than with the
+ * number of objects times the number of options.
+ *
+ * The template is added to a menu like any SubMenu. It shows the values of
+ * the instance bound to it with bind(), and changes made through the menu
+ * are written to that instance:
+ *
+ *   MenuTemplate t = new MenuTemplate(this, "entity");
+ *   int speed = t.addDouble("speed", 1, 0, 10);
+ *   TemplateInstance e = t.instance();
+ *   t.bind(e);
+ *   float s = (float)e.getDouble(speed);
+ */
+public class MenuTemplate extends SubMenu {
+
+	// Kinds of fields.
+	static final byte INTEGER = 0, DOUBLE = 1, TOGGLE = 2, ENUMERATED = 3, COLOR = 4;
+
+	// The option for each field, in the order they were added.
+	private final ArrayList<MenuItem> fields;
+
+	// Kind and default value of each field, as passed to MenuItem.changed().
+	private byte[] kinds;
+	private double[] defaults;
+
+	// Instance whose values are shown and edited, or null.
+	private TemplateInstance bound;
+
+	// Are the options being loaded from an instance? If so, their
+	// changes are not written back to it.
+	private boolean binding;
+
+	/* Constructor. Creates a template with no fields. */
+	public MenuTemplate(PApplet p, String nameInit) {
+		super(p, nameInit);
+		fields = new ArrayList<>();
+		kinds = new byte[4];
+		defaults = new double[4];
+		bound = null;
+		binding = false;
+	}
+
+	/* Add an integer field, shown as an IntegerOption. Returns the index
+	 * of the field, used to access its value in instances.
+	 */
+	public int addInteger(String fieldName, int valInit, int minInit, int maxInit) {
+		return addField(new TemplateInteger(this, fields.size(), fieldName, valInit, minInit, maxInit), INTEGER, valInit);
+	}
+
+	/* Add a floating-point field, shown as a DoubleOption. Returns the
+	 * index of the field.
+	 */
+	public int addDouble(String fieldName, double valueInit, double minInit, double maxInit) {
+		return addField(new TemplateDouble(this, fields.size(), fieldName, valueInit, minInit, maxInit), DOUBLE, valueInit);
+	}
+
+	/* Add a boolean field, shown as a ToggleableOption. Returns the index
+	 * of the field.
+	 */
+	public int addToggle(String fieldName, boolean valueInit) {
+		return addField(new TemplateToggle(this, fields.size(), fieldName, valueInit), TOGGLE, valueInit ? 1 : 0);
+	}
+
+	/* Add an enumerated field, shown as an EnumeratedOption. Its value in
+	 * instances is an index into optionsInit. Returns the index of the field.
+	 */
+	public int addEnumerated(String fieldName, String[] optionsInit, int index) {
+		return addField(new TemplateEnumerated(this, fields.size(), fieldName, optionsInit, index), ENUMERATED, index);
+	}
+
+	/* Add a color field, shown as a ColorOption. Returns the index of the
+	 * field.
+	 */
+	public int addColor(String fieldName, int colorModeInit, int comp1, int comp2, int comp3) {
+		TemplateColor option = new TemplateColor(this, fields.size(), fieldName, colorModeInit, comp1, comp2, comp3);
+		return addField(option, COLOR, option.packed());
+	}
+
+	/* Add a field's option to the template and return its index. */
+	private int addField(MenuItem option, byte kind, double defaultValue) {
+		int index = fields.size();
+		if (index == kinds.length) {
+			kinds = Arrays.copyOf(kinds, index * 2);
+			defaults = Arrays.copyOf(defaults, index * 2);
+		}
+		kinds[index] = kind;
+		defaults[index] = defaultValue;
+		fields.add(option);
+		add(option);
+		return index;
+	}
+
+	/* Returns the number of fields in this template. */
+	public int fieldCount() {
+		return fields.size();
+	}
+
+	/* Returns the index of the field with the given name, or -1. */
+	public int indexOf(String fieldName) {
+		for (int i = 0; i < fields.size(); i++) {
+			if (fields.get(i).name.equals(fieldName))
+				return i;
+		}
+		return -1;
+	}
+
+	/* Returns the option shown for a field. */
+	public MenuItem field(int index) {
+		return fields.get(index);
+	}
+
+	/* Returns a new instance of this template with every field at its
+	 * default value. No values are stored until one is changed.
+	 */
+	public TemplateInstance instance() {
+		return new TemplateInstance(this);
+	}
+
+	/* Show and edit the values of the given instance in the menu. If
+	 * instance is null, the options show their defaults and edits are not
+	 * stored anywhere.
+	 */
+	public void bind(TemplateInstance instance) {
+		if (instance != null && instance.template != this) {
+			throw new IllegalArgumentException("Instance belongs to a different template.");
+		}
+		bound = instance;
+		binding = true;
+		try {
+			for (int i = 0; i < fields.size(); i++) {
+				load(i, instance == null ? defaults[i] : instance.get(i));
+			}
+		} finally {
+			binding = false;
+		}
+	}
+
+	/* Returns the instance currently bound to the menu, or null. */
+	public TemplateInstance bound() {
+		return bound;
+	}
+
+	/* Returns the default value of a field, as passed to MenuItem.changed(). */
+	double defaultValue(int index) {
+		return defaults[index];
+	}
+
+	/* Returns a value limited to what a field can hold. */
+	double clamp(int index, double value) {
+		MenuItem option = fields.get(index);
+		switch (kinds[index]) {
+		case INTEGER:
+			IntegerOption i = (IntegerOption)option;
+			return Math.max(Math.min(Math.round(value), i.getMax()), i.getMin());
+		case DOUBLE:
+			DoubleOption d = (DoubleOption)option;
+			return Math.max(Math.min(value, d.getMax()), d.getMin());
+		case TOGGLE:
+			return value != 0 ? 1 : 0;
+		case ENUMERATED:
+			int selected = (int)value;
+			if (selected < 0 || selected >= ((EnumeratedOption)option).size())
+				throw new IllegalArgumentException("Invalid index.");
+			return selected;
+		default:
+			return (int)value & 0xFFFFFF;
+		}
+	}
+
+	/* Called by an instance when one of its values is set while it is
+	 * bound, so the menu shows the new value.
+	 */
+	void instanceChanged(TemplateInstance instance, int index, double value) {
+		if (instance == bound) {
+			binding = true;
+			try {
+				load(index, value);
+			} finally {
+				binding = false;
+			}
+		}
+	}
+
+	/* Set a field's option to a value. */
+	private void load(int index, double value) {
+		MenuItem option = fields.get(index);
+		switch (kinds[index]) {
+		case INTEGER:
+			((IntegerOption)option).set((int)value);
+			break;
+		case DOUBLE:
+			((DoubleOption)option).set(value);
+			break;
+		case TOGGLE:
+			((ToggleableOption)option).set(value != 0);
+			break;
+		case ENUMERATED:
+			((EnumeratedOption)option).set((int)value);
+			break;
+		default:
+			int c = (int)value;
+			ColorOption color = (ColorOption)option;
+			color.setComponent(c >> 16 & 0xFF, 0);
+			color.setComponent(c >> 8 & 0xFF, 1);
+			color.setComponent(c & 0xFF, 2);
+		}
+	}
+
+	/* Called when a field's option changes. Stores the new value in the
+	 * bound instance before the change is reported, so rules that read the
+	 * instance see it. Returns false if the change came from loading an
+	 * instance into the options, which is not reported as a change.
+	 */
+	private boolean fieldChanged(int index, double newValue) {
+		if (binding) {
+			return false;
+		}
+		if (bound != null) {
+			bound.store(index, newValue);
+		}
+		return true;
+	}
+
+	/* The options shown for each kind of field. Each one passes its
+	 * changes on to the template.
+	 */
+	private static class TemplateInteger extends IntegerOption {
+		private final MenuTemplate template;
+		private final int index;
+
+		/* Constructor. t is the template and i the index of the field. */
+		TemplateInteger(MenuTemplate t, int i, String nameInit, int valInit, int minInit, int maxInit) {
+			super(null, nameInit, valInit, minInit, maxInit);
+			template = t;
+			index = i;
+		}
+
+		/* Extension of MenuItem.changed(). Stores the value in the bound instance. */
+		protected void changed(double oldValue, double newValue) {
+			if (template.fieldChanged(index, newValue))
+				super.changed(oldValue, newValue);
+		}
+	}
+
+	private static class TemplateDouble extends DoubleOption {
+		private final MenuTemplate template;
+		private final int index;
+
+		/* Constructor. t is the template and i the index of the field. */
+		TemplateDouble(MenuTemplate t, int i, String nameInit, double valueInit, double minInit, double maxInit) {
+			super(null, nameInit, valueInit, minInit, maxInit);
+			template = t;
+			index = i;
+		}
+
+		/* Extension of MenuItem.changed(). Stores the value in the bound instance. */
+		protected void changed(double oldValue, double newValue) {
+			if (template.fieldChanged(index, newValue))
+				super.changed(oldValue, newValue);
+		}
+	}
+
+	private static class TemplateToggle extends ToggleableOption {
+		private final MenuTemplate template;
+		private final int index;
+
+		/* Constructor. t is the template and i the index of the field. */
+		TemplateToggle(MenuTemplate t, int i, String nameInit, boolean valueInit) {
+			super(null, nameInit, valueInit);
+			template = t;
+			index = i;
+		}
+
+		/* Extension of MenuItem.changed(). Stores the value in the bound instance. */
+		protected void changed(double oldValue, double newValue) {
+			if (template.fieldChanged(index, newValue))
+				super.changed(oldValue, newValue);
+		}
+	}
+
+	private static class TemplateEnumerated extends EnumeratedOption {
+		private final MenuTemplate template;
+		private final int index;
+
+		/* Constructor. t is the template and i the index of the field. */
+		TemplateEnumerated(MenuTemplate t, int i, String nameInit, String[] optionsInit, int selectedInit) {
+			super(null, nameInit, optionsInit, selectedInit);
+			template = t;
+			index = i;
+		}
+
+		/* Extension of MenuItem.changed(). Stores the value in the bound instance. */
+		protected void changed(double oldValue, double newValue) {
+			if (template.fieldChanged(index, newValue))
+				super.changed(oldValue, newValue);
+		}
+	}
+
+	private static class TemplateColor extends ColorOption {
+		private final MenuTemplate template;
+		private final int index;
+
+		/* Constructor. t is the template and i the index of the field. */
+		TemplateColor(MenuTemplate t, int i, String nameInit, int colorModeInit, int comp1, int comp2, int comp3) {
+			super(null, nameInit, colorModeInit, comp1, comp2, comp3);
+			template = t;
+			index = i;
+		}
+
+		/* Extension of MenuItem.changed(). Stores the value in the bound instance. */
+		protected void changed(double oldValue, double newValue) {
+			if (template.fieldChanged(index, newValue))
+				super.changed(oldValue, newValue);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package menu;
+
+/* Typed entry of a number into an IntegerOption or DoubleOption. Used by
+ * TextMenu: typing a key that is not bound in the keymap while one of these
+ * options is selected starts an entry if it is a digit, '-', or (for a
+ * DoubleOption) '.'. The typed characters are kept in a fixed char buffer
+ * until ENTER commits them through the option's set(), which clamps the value to
+ * its bounds. The buffer is reused for every entry and parsed in place, so
+ * typing and committing a number does not allocate.
+ */
+class NumericEntry {
+
+	// Maximum number of digits that can be typed. Keeps the mantissa
+	// within a long.
+	static final int MAX_DIGITS = 18;
+
+	// Powers of ten, for placing the decimal point.
+	private static final double[] POW10 = new double[MAX_DIGITS + 1];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
+
+	// Digits and decimal point typed so far.
+	private final char[] buffer;
+	private int length;
+
+	// Number of digits in the buffer.
+	private int digits;
+
+	// Position of the decimal point in the buffer, or -1 if none.
+	private int point;
+
+	// Was a minus sign typed?
+	private boolean negative;
+
+	// The option being typed into, or null if no entry is in progress.
+	private MenuItem target;
+
+	/* Constructor. Creates an entry that is not in progress. */
+	NumericEntry() {
+		buffer = new char[MAX_DIGITS + 1];
+		target = null;
+	}
+
+	/* Returns true iff an entry is in progress. */
+	boolean isActive() {
+		return target != null;
+	}
+
+	/* Returns the option being typed into, or null. */
+	MenuItem target() {
+		return target;
+	}
+
+	/* Returns true iff numbers can be typed into the given item. */
+	static boolean accepts(MenuItem item) {
+		return item instanceof IntegerOption || item instanceof DoubleOption;
+	}
+
+	/* Returns true iff typing key while item is selected starts an entry:
+	 * a digit or '-', or '.' for a DoubleOption. Only called for keys
+	 * that are not bound in the keymap, so bound keys keep their commands.
+	 */
+	static boolean starts(MenuItem item, char key) {
+		return (key >= '0' && key <= '9' || key == '-') && accepts(item)
+				|| key == '.' && item instanceof DoubleOption;
+	}
+
+	/* Start a new, empty entry into the given option. */
+	void begin(MenuItem item) {
+		target = item;
+		length = 0;
+		digits = 0;
+		point = -1;
+		negative = false;
+	}
+
+	/* End the entry without changing the option. */
+	void cancel() {
+		target = null;
+	}
+
+	/* Add a typed character to the entry: a digit, '-' to flip the sign,
+	 * or '.' for the decimal point of a DoubleOption. Returns true iff the
+	 * character is one of these, even if there was no room for it.
+	 */
+	boolean type(char key) {
+		if (key >= '0' && key <= '9') {
+			if (digits < MAX_DIGITS) {
+				buffer[length++] = key;
+				digits++;
+			}
+			return true;
+		} else if (key == '-') {
+			negative = !negative;
+			return true;
+		} else if (key == '.' && target instanceof DoubleOption) {
+			if (point < 0) {
+				point = length;
+				buffer[length++] = key;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/* Remove the last typed digit or decimal point. Ends the entry if
+	 * nothing is left.
+	 */
+	void backspace() {
+		if (length > 0) {
+			length--;
+			if (length == point)
+				point = -1;
+			else
+				digits--;
+		}
+		if (length == 0)
+			target = null;
+	}
+
+	/* Set the option to the typed value and end the entry. Returns true
+	 * iff the option's value changed.
+	 */
+	boolean commit() {
+		MenuItem item = target;
+		target = null;
+		if (item instanceof IntegerOption) {
+			long value = mantissa();
+			if (negative)
+				value = -value;
+			value = Math.max(Math.min(value, Integer.MAX_VALUE), Integer.MIN_VALUE);
+			return ((IntegerOption)item).set((int)value);
+		} else if (item instanceof DoubleOption) {
+			int fraction = point < 0 ? 0 : length - point - 1;
+			double value = mantissa() / POW10[fraction];
+			return ((DoubleOption)item).set(negative ? -value : value);
+		}
+		return false;
+	}
+
+	/* Returns the typed digits as an integer, ignoring the decimal point. */
+	private long mantissa() {
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			if (i != point)
+				value = value * 10 + (buffer[i] - '0');
+		}
+		return value;
+	}
+
+	/* Returns the text shown in the menu for the option being typed into. */
+	String label() {
+		StringBuilder sb = new StringBuilder(length + 24);
+		sb.append(target.name).append(" = ");
+		if (negative)
+			sb.append('-');
+		return sb.append(buffer, 0, length).append('_').toString();
+	}
+}
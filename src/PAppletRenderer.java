@@ -0,0 +1,61 @@
+package menu;
+
+import processing.core.*;
+
+/* A MenuRenderer that draws to the sketch window through a PApplet.
+ * This is the renderer a TextMenu uses unless it is given another.
+ */
+public class PAppletRenderer implements MenuRenderer {
+
+	// The PApplet to draw with.
+	private final PApplet parent;
+
+	/* Constructor. p is the PApplet to draw with. */
+	public PAppletRenderer(PApplet p) {
+		parent = p;
+	}
+
+	/* Implementation of MenuRenderer.begin(). Disables stroke for the highlight box. */
+	public void begin() {
+		parent.noStroke();
+	}
+
+	/* Implementation of MenuRenderer.end(). Does nothing. */
+	public void end() {
+	}
+
+	/* Implementation of MenuRenderer.textAscent(). */
+	public float textAscent() {
+		return parent.textAscent();
+	}
+
+	/* Implementation of MenuRenderer.textDescent(). */
+	public float textDescent() {
+		return parent.textDescent();
+	}
+
+	/* Implementation of MenuRenderer.textWidth(). */
+	public float textWidth(char c) {
+		return parent.textWidth(c);
+	}
+
+	/* Implementation of MenuRenderer.lineSpacing(). Uses the default menu spacing. */
+	public float lineSpacing() {
+		return TextMenu.TXT_SPACING;
+	}
+
+	/* Implementation of MenuRenderer.fill(). */
+	public void fill(int color) {
+		parent.fill(color);
+	}
+
+	/* Implementation of MenuRenderer.rect(). */
+	public void rect(float x, float y, float w, float h) {
+		parent.rect(x, y, w, h);
+	}
+
+	/* Implementation of MenuRenderer.text(). */
+	public void text(String s, float x, float y) {
+		parent.text(s, x, y);
+	}
+}
@@ -0,0 +1,81 @@
+package menu;
+
+import processing.core.*;
+
+/* A MenuRenderer that draws to a PGraphics, such as an offscreen buffer
+ * made with createGraphics(). The menu can then be drawn into the buffer
+ * at a lower rate or resolution than the sketch itself.
+ */
+public class PGraphicsRenderer implements MenuRenderer {
+
+	// The PGraphics to draw to.
+	private final PGraphics g;
+
+	// Should begin() and end() call beginDraw() and endDraw()?
+	private final boolean manageDraw;
+
+	/* Constructor. graphics is the PGraphics to draw to. If manageDrawInit
+	 * is true, the renderer calls beginDraw() and endDraw() itself each
+	 * frame. Otherwise, the menu must be drawn between the sketch's own
+	 * calls to them.
+	 */
+	public PGraphicsRenderer(PGraphics graphics, boolean manageDrawInit) {
+		g = graphics;
+		manageDraw = manageDrawInit;
+	}
+
+	/* Returns the PGraphics this renderer draws to. */
+	public PGraphics getGraphics() {
+		return g;
+	}
+
+	/* Implementation of MenuRenderer.begin(). Disables stroke, and begins drawing
+	 * if this renderer manages it.
+	 */
+	public void begin() {
+		if (manageDraw)
+			g.beginDraw();
+		g.noStroke();
+	}
+
+	/* Implementation of MenuRenderer.end(). Ends drawing if this renderer manages it. */
+	public void end() {
+		if (manageDraw)
+			g.endDraw();
+	}
+
+	/* Implementation of MenuRenderer.textAscent(). */
+	public float textAscent() {
+		return g.textAscent();
+	}
+
+	/* Implementation of MenuRenderer.textDescent(). */
+	public float textDescent() {
+		return g.textDescent();
+	}
+
+	/* Implementation of MenuRenderer.textWidth(). */
+	public float textWidth(char c) {
+		return g.textWidth(c);
+	}
+
+	/* Implementation of MenuRenderer.lineSpacing(). Uses the default menu spacing. */
+	public float lineSpacing() {
+		return TextMenu.TXT_SPACING;
+	}
+
+	/* Implementation of MenuRenderer.fill(). */
+	public void fill(int color) {
+		g.fill(color);
+	}
+
+	/* Implementation of MenuRenderer.rect(). */
+	public void rect(float x, float y, float w, float h) {
+		g.rect(x, y, w, h);
+	}
+
+	/* Implementation of MenuRenderer.text(). */
+	public void text(String s, float x, float y) {
+		g.text(s, x, y);
+	}
+}
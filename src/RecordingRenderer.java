@@ -0,0 +1,146 @@
+package menu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* A MenuRenderer that draws nothing. It counts the calls made to it and
+ * can keep the text of the last frame, so a menu can run headless, for
+ * example in automated tests, or so layout can be timed without the cost
+ * of drawing text. Text measurements use fixed sizes given to the
+ * constructor.
+ */
+public class RecordingRenderer implements MenuRenderer {
+
+	// Fixed text measurements.
+	private final float charWidth, ascent, descent, spacing;
+
+	// Should the strings and positions of text() calls be kept?
+	private final boolean recordText;
+
+	// Text drawn in the current or last frame, and where it was drawn.
+	private final ArrayList<String> texts;
+	private float[] textX, textY;
+
+	// Number of frames begun, and calls made in the current or last frame.
+	private int frames, rectCount, textCount;
+
+	/* Constructor. Measures every character as charWidthInit wide and
+	 * ascentInit + descentInit tall, with spacingInit between lines. If
+	 * recordTextInit is true, the text and position of every text() call
+	 * in a frame are kept until the next frame begins.
+	 */
+	public RecordingRenderer(float charWidthInit, float ascentInit, float descentInit, float spacingInit,
+			boolean recordTextInit) {
+		charWidth = charWidthInit;
+		ascent = ascentInit;
+		descent = descentInit;
+		spacing = spacingInit;
+		recordText = recordTextInit;
+		texts = new ArrayList<>();
+		textX = new float[16];
+		textY = new float[16];
+	}
+
+	/* Constructor. Records text, with one unit per character and line. */
+	public RecordingRenderer() {
+		this(1, 1, 0, 0, true);
+	}
+
+	/* Returns the number of frames drawn so far. */
+	public int frameCount() {
+		return frames;
+	}
+
+	/* Returns the number of rect() calls in the current or last frame. */
+	public int rectCount() {
+		return rectCount;
+	}
+
+	/* Returns the number of text() calls in the current or last frame. */
+	public int textCount() {
+		return textCount;
+	}
+
+	/* Returns the string passed to the i-th text() call of the current or
+	 * last frame. Only available if text is being recorded.
+	 */
+	public String getText(int i) {
+		return texts.get(i);
+	}
+
+	/* Returns the x coordinate of the i-th text() call. */
+	public float getTextX(int i) {
+		checkRecorded(i);
+		return textX[i];
+	}
+
+	/* Returns the y coordinate of the i-th text() call. */
+	public float getTextY(int i) {
+		checkRecorded(i);
+		return textY[i];
+	}
+
+	/* Throw an exception if there is no recorded text() call i. */
+	private void checkRecorded(int i) {
+		if (i < 0 || i >= texts.size())
+			throw new IndexOutOfBoundsException("No recorded text at index " + i);
+	}
+
+	/* Implementation of MenuRenderer.begin(). Starts a new frame. */
+	public void begin() {
+		frames++;
+		rectCount = 0;
+		textCount = 0;
+		texts.clear();
+	}
+
+	/* Implementation of MenuRenderer.end(). Does nothing. */
+	public void end() {
+	}
+
+	/* Implementation of MenuRenderer.textAscent(). */
+	public float textAscent() {
+		return ascent;
+	}
+
+	/* Implementation of MenuRenderer.textDescent(). */
+	public float textDescent() {
+		return descent;
+	}
+
+	/* Implementation of MenuRenderer.textWidth(). */
+	public float textWidth(char c) {
+		return charWidth;
+	}
+
+	/* Implementation of MenuRenderer.lineSpacing(). */
+	public float lineSpacing() {
+		return spacing;
+	}
+
+	/* Implementation of MenuRenderer.fill(). Does nothing. */
+	public void fill(int color) {
+	}
+
+	/* Implementation of MenuRenderer.rect(). Counts the call. */
+	public void rect(float x, float y, float w, float h) {
+		rectCount++;
+	}
+
+	/* Implementation of MenuRenderer.text(). Counts the call and records
+	 * the text if text is being recorded.
+	 */
+	public void text(String s, float x, float y) {
+		if (recordText) {
+			int i = texts.size();
+			if (i == textX.length) {
+				textX = Arrays.copyOf(textX, i * 2);
+				textY = Arrays.copyOf(textY, i * 2);
+			}
+			texts.add(s);
+			textX[i] = x;
+			textY[i] = y;
+		}
+		textCount++;
+	}
+}
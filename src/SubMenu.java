@@ -11,17 +11,28 @@ import processing.core.*;
  */
 public class SubMenu extends MenuItem {
 
+	// The back button shown at the bottom of every SubMenu. It holds no
+	// state of its own, so a single instance is shared by all SubMenus.
+	private static final BackButton BACK = new BackButton();
+
 	// The MenuItems in this SubMenu. These are the items that
 	// will be displayed when this SubMenu is entered.
 	private ArrayList<MenuItem> items;
 
 	// The SubMenu which contains this one. May be the TextMenu's top
 	// level, or some other SubMenu contained within it.
-	private SubMenu superMenu;
+	protected SubMenu superMenu;
 	
 	// TextMenu that this SubMenu is in.
 	private TextMenu menu;
 
+	// Can this SubMenu be entered?
+	private boolean enabled;
+
+	// Index of the item that was selected when this SubMenu was last left,
+	// selected again when it is re-entered.
+	int cursor;
+
 	/* Constructor.
 	 * Initializes an empty SubMenu.
 	 */
@@ -30,14 +41,40 @@ public class SubMenu extends MenuItem {
 		items = new ArrayList<>();
 		superMenu = null;
 		menu = null;
-		items.add(new BackButton(parent, this));
+		enabled = true;
+		items.add(BACK);
 	}
 
 	/* Adds MenuItems to this SubMenu. Items added through
 	 * this function will be displayed when the SubMenu is
 	 * entered, with the leftmost item closest to the bottom.
+	 * Throws an exception if an item is null, or is a SubMenu or
+	 * ColorOption that is already in a SubMenu or given twice, or is this
+	 * SubMenu or one that contains it. SubMenus and ColorOptions can only
+	 * be in one SubMenu, which they go back to.
 	 */
 	public boolean add(MenuItem... itemsToAdd) {
+		for (int i = 0; i < itemsToAdd.length; i++) {
+			MenuItem item = itemsToAdd[i];
+			if (item == null) {
+				throw new IllegalArgumentException("Cannot add a null item.");
+			}
+			if (item instanceof SubMenu && ((SubMenu)item).superMenu != null
+					|| item instanceof ColorOption && ((ColorOption)item).superMenu != null) {
+				throw new IllegalArgumentException(item.name + " is already in a SubMenu.");
+			}
+			if (item instanceof SubMenu || item instanceof ColorOption) {
+				for (int j = 0; j < i; j++) {
+					if (itemsToAdd[j] == item)
+						throw new IllegalArgumentException(item.name + " is given more than once.");
+				}
+			}
+			for (SubMenu s = this; s != null; s = s.superMenu) {
+				if (s == item)
+					throw new IllegalArgumentException("Cannot add " + item.name + " to a SubMenu inside itself.");
+			}
+		}
+
 		boolean addedItems = true;
 		for (MenuItem item : itemsToAdd) {
 			addedItems &= items.add(item);
@@ -46,7 +83,7 @@ public class SubMenu extends MenuItem {
 				((SubMenu)item).superMenu = this;
 				((SubMenu)item).setMenu(this.menu);
 			} else if (item instanceof ColorOption) {
-				((ColorOption)item).colorMenu.superMenu = this;
+				((ColorOption)item).setSuperMenu(this);
 				((ColorOption)item).setMenu(this.menu);
 			}
 		}
@@ -71,14 +108,46 @@ public class SubMenu extends MenuItem {
 		return items.size();
 	}
 	
-	/* Remove an item from the given index. Returns the Item removed. */
+	/* Remove an item from the given index. Returns the Item removed.
+	 * A removed SubMenu or ColorOption is no longer linked to this
+	 * SubMenu or its TextMenu.
+	 */
 	public MenuItem remove(int index) {
-		return items.remove(index);
+		MenuItem removed = items.remove(index);
+		detach(removed);
+		if (index < cursor)
+			cursor--;
+		if (menu != null)
+			menu.itemsRemoved(this, index);
+		return removed;
 	}
 	
-	/* Remove all items from this SubMenu, making it empty. */
+	/* Remove all items from this SubMenu, making it empty.
+	 * This includes the back button.
+	 */
 	public void clear() {
+		for (MenuItem item : items)
+			detach(item);
 		items.clear();
+		cursor = 0;
+		if (menu != null)
+			menu.itemsRemoved(this, -1);
+	}
+
+	/* Unlink an item that was removed from this SubMenu. */
+	private void detach(MenuItem item) {
+		if (item instanceof SubMenu && ((SubMenu)item).superMenu == this) {
+			((SubMenu)item).superMenu = null;
+			((SubMenu)item).setMenu(null);
+		} else if (item instanceof ColorOption && ((ColorOption)item).superMenu == this) {
+			((ColorOption)item).setSuperMenu(null);
+			((ColorOption)item).setMenu(null);
+		}
+	}
+
+	/* Returns the TextMenu this SubMenu is in, or null. */
+	TextMenu getMenu() {
+		return menu;
 	}
 
 	/* Set the menu field of this SubMenu and all SubMenus contained
@@ -97,18 +166,40 @@ public class SubMenu extends MenuItem {
 	/* Return the string that should be displayed for this SubMenu
 	 * in the parent SubMenu's listing. */
 	public String toString() {
-		return "> " + name;
+		return enabled ? "> " + name : "> " + name + " (disabled)";
+	}
+
+	/* Returns true iff this SubMenu can currently be entered. */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/* Set whether this SubMenu can be entered. A disabled SubMenu is
+	 * still displayed, but ignores key input.
+	 */
+	public void setEnabled(boolean enabledSet) {
+		enabled = enabledSet;
 	}
 
 	/* Implementation of MenuItem.action().
-	 * Perform an action on key input when this item is selected.
-	 * 
-	 * Upon receipt of the keys enter, return, or right arrow,
-	 * the menu will enter this SubMenu, switching the display contents
-	 * to the contents of this SubMenu, along with a back button.
+	 * Perform an action on key input when this item is selected,
+	 * using the standard keymap.
 	 */
 	protected boolean action(char key, int keyCode) {
-		if (key == RETURN || key == ENTER || (key == CODED && keyCode == RIGHT)) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * 
+	 * Upon ENTER or INCREMENT (enter, return, or right arrow in the
+	 * standard keymap), the menu will enter this SubMenu, switching the
+	 * display contents to the contents of this SubMenu, along with a
+	 * back button. A disabled SubMenu ignores all commands.
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (!enabled)
+			return false;
+		if (command == MenuCommand.ENTER || command == MenuCommand.INCREMENT) {
 			if (menu != null)
 				menu.setCurrMenu(this);
 			return true;
@@ -129,21 +220,43 @@ public class SubMenu extends MenuItem {
 		}
 	}
 
+	/* Pass a command to the item at the given index and return true
+	 * iff it performed some action. The shared back button cannot know
+	 * which SubMenu it is in, so it is handled here on its behalf: on
+	 * ENTER, DECREMENT, or BACK, the menu goes back to the parent SubMenu.
+	 */
+	protected boolean itemCommand(int index, MenuCommand command, char key, int keyCode) {
+		MenuItem item = items.get(index);
+		if (item == BACK) {
+			if (command == MenuCommand.ENTER || command == MenuCommand.DECREMENT || command == MenuCommand.BACK) {
+				return back();
+			}
+			return false;
+		}
+		return item.command(command, key, keyCode);
+	}
+
+	/* Leave this SubMenu, making the menu display its parent SubMenu.
+	 * Returns true iff there was a parent SubMenu to go back to.
+	 */
+	protected boolean back() {
+		if (menu == null || superMenu == null)
+			return false;
+		menu.setCurrMenu(superMenu);
+		return true;
+	}
+
 	
 	/* Private nested class for the "back button" that appears at the bottom
-	 * of every SubMenu.
+	 * of every SubMenu. Key input on it is handled by SubMenu.itemCommand().
 	 */
-	private class BackButton extends MenuItem {
+	private static class BackButton extends MenuItem {
 
-		// The SubMenu that this BackButton is a part of.
-		private SubMenu in;
-
-		/* Constructor, which should only be called by SubMenu.
-		 * menuIn is the SubMenu that this BackButton is in.
+		/* Constructor, which should only be called by SubMenu to create
+		 * the shared instance.
 		 */
-		protected BackButton(PApplet p, SubMenu menuIn) {
-			super(p, menuIn.name + " back");
-			in = menuIn;
+		protected BackButton() {
+			super(null, "back");
 		}
 
 		/* Implementation of MenuItem.toString().
@@ -155,17 +268,10 @@ public class SubMenu extends MenuItem {
 		}
 
 		/* Implementation of MenuItem.action().
-		 * Performs an action on key input when this item is selected.
-		 * 
-		 * On the following keys: return, enter, left arrow
-		 * the menu will navigate to the parent SubMenu of the 
-		 * current one.
+		 * The shared back button does not know which SubMenu it is in,
+		 * so navigation is done by SubMenu.itemCommand() instead.
 		 */
 		protected boolean action(char key, int keyCode) {
-			if (key == RETURN || key == ENTER || (key == CODED && keyCode == LEFT)) {
-				in.menu.setCurrMenu(in.superMenu);
-				return true;
-			}
 			return false;
 		}
 	}
@@ -0,0 +1,174 @@
+package menu;
+
+import java.util.Arrays;
+
+/* The values of one object that uses a MenuTemplate. An instance stores
+ * only the values that differ from the template's defaults; every other
+ * field reads its default from the template. Nothing is allocated until a
+ * value is first changed, and setting a value back to its default removes
+ * it again.
+ *
+ * Field values are read and written by the index returned when the field
+ * was added to the template. Values are passed as numbers as described in
+ * MenuItem.changed(): booleans as 0 or 1, enumerated values as an index,
+ * and colors as their three components packed 8 bits each.
+ */
+public class TemplateInstance {
+
+	// The template this is an instance of.
+	final MenuTemplate template;
+
+	// Indices of the fields whose values differ from the defaults, in
+	// increasing order, and their values. Null until a value is changed.
+	private int[] fields;
+	private double[] values;
+
+	// Number of fields with stored values.
+	private int count;
+
+	/* Constructor. Use MenuTemplate.instance() to create instances. */
+	TemplateInstance(MenuTemplate templateInit) {
+		template = templateInit;
+	}
+
+	/* Returns the template this is an instance of. */
+	public MenuTemplate getTemplate() {
+		return template;
+	}
+
+	/* Returns the value of a field. */
+	public double get(int index) {
+		int pos = find(index);
+		return pos >= 0 ? values[pos] : template.defaultValue(index);
+	}
+
+	/* Returns the value of an integer or enumerated field. */
+	public int getInt(int index) {
+		return (int)get(index);
+	}
+
+	/* Returns the value of a floating-point field. */
+	public double getDouble(int index) {
+		return get(index);
+	}
+
+	/* Returns the value of a boolean field. */
+	public boolean getBoolean(int index) {
+		return get(index) != 0;
+	}
+
+	/* Returns one component of a color field. comp may be 0, 1, or 2, as
+	 * in ColorOption.getComponent().
+	 */
+	public int getComponent(int index, int comp) {
+		if (comp < 0 || comp > 2)
+			throw new IllegalArgumentException("Component argument must be 0, 1, or 2. Given: " + comp);
+		return (int)get(index) >> (16 - 8 * comp) & 0xFF;
+	}
+
+	/* Set the value of a field, limited to what the field can hold, and
+	 * return true iff it changed. If this instance is bound to the
+	 * template, the menu shows the new value.
+	 */
+	public boolean set(int index, double value) {
+		double newValue = template.clamp(index, value);
+		if (get(index) == newValue)
+			return false;
+		store(index, newValue);
+		template.instanceChanged(this, index, newValue);
+		return true;
+	}
+
+	/* Set the value of a boolean field and return true iff it changed. */
+	public boolean setBoolean(int index, boolean value) {
+		return set(index, value ? 1 : 0);
+	}
+
+	/* Set one component of a color field and return true iff it changed. */
+	public boolean setComponent(int index, int comp, int val) {
+		if (comp < 0 || comp > 2)
+			throw new IllegalArgumentException("Component argument must be 0, 1, or 2. Given: " + comp);
+		int shift = 16 - 8 * comp;
+		int c = (int)get(index) & ~(0xFF << shift) | Math.max(Math.min(val, 255), 0) << shift;
+		return set(index, c);
+	}
+
+	/* Set a field back to its default value and return true iff it changed. */
+	public boolean reset(int index) {
+		return set(index, template.defaultValue(index));
+	}
+
+	/* Set every field back to its default value, freeing stored values. */
+	public void resetAll() {
+		int[] changed = fields;
+		int n = count;
+		fields = null;
+		values = null;
+		count = 0;
+		for (int i = 0; i < n; i++) {
+			template.instanceChanged(this, changed[i], template.defaultValue(changed[i]));
+		}
+	}
+
+	/* Returns the number of fields whose values differ from the defaults. */
+	public int overrideCount() {
+		return count;
+	}
+
+	/* Returns an estimate of the memory used by this instance, in bytes,
+	 * made in the same way as MenuFootprint.
+	 */
+	public long footprint() {
+		long size = MenuFootprint.shallowSize(TemplateInstance.class);
+		if (fields != null) {
+			size += MenuFootprint.align(MenuFootprint.ARRAY_HEADER + 4L * fields.length);
+			size += MenuFootprint.align(MenuFootprint.ARRAY_HEADER + 8L * values.length);
+		}
+		return size;
+	}
+
+	/* Store the value of a field without checking it, removing it if it
+	 * is the default. Used by the template when the menu changes a value.
+	 */
+	void store(int index, double value) {
+		int pos = find(index);
+		if (value == template.defaultValue(index)) {
+			if (pos >= 0) {
+				count--;
+				System.arraycopy(fields, pos + 1, fields, pos, count - pos);
+				System.arraycopy(values, pos + 1, values, pos, count - pos);
+				if (count == 0) {
+					fields = null;
+					values = null;
+				}
+			}
+		} else if (pos >= 0) {
+			values[pos] = value;
+		} else {
+			pos = -pos - 1;
+			if (fields == null) {
+				fields = new int[2];
+				values = new double[2];
+			} else if (count == fields.length) {
+				fields = Arrays.copyOf(fields, count * 2);
+				values = Arrays.copyOf(values, count * 2);
+			}
+			System.arraycopy(fields, pos, fields, pos + 1, count - pos);
+			System.arraycopy(values, pos, values, pos + 1, count - pos);
+			fields[pos] = index;
+			values[pos] = value;
+			count++;
+		}
+	}
+
+	/* Returns the position of a field in the stored values, or if it is
+	 * not stored, -(the position it would be inserted at) - 1.
+	 */
+	private int find(int index) {
+		if (index < 0 || index >= template.fieldCount())
+			throw new IndexOutOfBoundsException("No field at index " + index);
+		if (fields == null)
+			return -1;
+		return Arrays.binarySearch(fields, 0, count, index);
+	}
+}
@@ -1,5 +1,7 @@
 package menu;
 
+import java.util.ArrayList;
+
 import processing.core.*;
 import processing.event.*;
 
@@ -10,9 +12,13 @@ import processing.event.*;
 
 public class TextMenu implements PConstants {
 
-	// parent PApplet for using Processing functions.
+	// parent PApplet for using Processing functions. May be null if the
+	// menu was created without one.
 	private PApplet parent;
 
+	// Renderer the menu draws itself with.
+	private MenuRenderer renderer;
+
 	// Is the menu currently displayed on the screen?
 	private boolean isShowing;
 	
@@ -28,6 +34,32 @@ public class TextMenu implements PConstants {
 	// SubMenu currently displayed.
 	private SubMenu currMenu;
 
+	// Bindings from keys to the commands they perform.
+	private Keymap keymap;
+
+	// Number being typed into the selected option, if any.
+	private final NumericEntry entry = new NumericEntry();
+
+	// Hotkeys, indexed by hotkeyIndex(). Null until a hotkey is added.
+	private Hotkey[] hotkeys;
+
+	// Number of modifier combinations in the hotkey table: any of
+	// Event.SHIFT, Event.CTRL, Event.META and Event.ALT.
+	static final int HOTKEY_MODIFIERS = 16;
+
+	/* What a hotkey does: performs a command on an item, or runs an action. */
+	private static final class Hotkey {
+		final MenuItem item;
+		final MenuCommand command;
+		final Runnable action;
+
+		Hotkey(MenuItem itemInit, MenuCommand commandInit, Runnable actionInit) {
+			item = itemInit;
+			command = commandInit;
+			action = actionInit;
+		}
+	}
+
 	// Colors for displaying the text of the menu.
 	private int textColor;
 	private int textColorInverse;
@@ -36,7 +68,54 @@ public class TextMenu implements PConstants {
 	private float xCoord, yCoord;
 	
 	// Constant for the vertical spacing between lines when displayed.
-	private final float TXT_SPACING = 5;
+	static final float TXT_SPACING = 5;
+
+	// Levels of degraded drawing used to stay within the frame budget.
+	// Each level also does what the levels below it do.
+	public static final int DEGRADE_NONE = 0;
+	// Estimate the width of the highlight box instead of measuring it.
+	public static final int DEGRADE_HIGHLIGHT = 1;
+	// Only draw the lines nearest the selected item.
+	public static final int DEGRADE_LINES = 2;
+	// Only refresh the labels of items that are not selected every few frames.
+	public static final int DEGRADE_LABELS = 3;
+
+	// Number of lines drawn at DEGRADE_LINES and above.
+	static final int DEGRADED_LINES = 12;
+	// Frames between label refreshes at DEGRADE_LABELS.
+	static final int LABEL_REFRESH_FRAMES = 10;
+	// Frames in a row that must be drawn in under half the budget before
+	// the degrade level is lowered again.
+	static final int RECOVER_FRAMES = 30;
+
+	// Time allowed for drawing the menu each frame, in nanoseconds,
+	// or 0 if there is no limit.
+	private long frameBudget;
+
+	// Current degrade level, one of the DEGRADE constants.
+	private int degradeLevel;
+
+	// Frames in a row drawn in under half the budget.
+	private int fastFrames;
+
+	// Number of frames drawn at a degrade level above DEGRADE_NONE.
+	private long degradedFrames;
+
+	// Time taken by the last call to draw(), in nanoseconds.
+	private long lastDrawTime;
+
+	// Labels of the items in labelMenu, kept between frames at
+	// DEGRADE_LABELS, and the number of frames drawn since they were
+	// last all refreshed.
+	private String[] labels;
+	private SubMenu labelMenu;
+	private int labelAge;
+
+	// Width of the sparklines drawn next to tracked options, in characters.
+	static final int SPARKLINE_CHARS = 12;
+
+	// Histories sampled once per frame by draw().
+	private ArrayList<ValueHistory> frameHistories;
 
 
 	/* Constructor
@@ -47,22 +126,74 @@ public class TextMenu implements PConstants {
 	public TextMenu(PApplet p, float x, float y, int c) {
 
 		parent = p;
+		renderer = new PAppletRenderer(parent);
 		xCoord = x;
 		yCoord = y;
 		setColor(c);
+		init();
+		
+		// Register draw and keyEvent functions so they will be called
+		// by the PApplet.
+		parent.registerMethod("draw", this);
+		parent.registerMethod("keyEvent", this);
+	}
+
+	/* Constructor
+	 * Creates a new TextMenu that is not tied to a PApplet, drawing with
+	 * renderer r at location (x, y) in text color c, with inverse as the
+	 * color of highlighted text. Such a menu is not drawn or sent key events
+	 * automatically; call draw() and keyEvent() directly. This allows a menu
+	 * to run headless, for example with a RecordingRenderer in tests.
+	 */
+	public TextMenu(MenuRenderer r, float x, float y, int c, int inverse) {
+		parent = null;
+		setRenderer(r);
+		xCoord = x;
+		yCoord = y;
+		setColor(c, inverse);
+		init();
+	}
+
+	/* Initialize the menu's state and top level. Used by constructors. */
+	private void init() {
 		isShowing = false;
 		acceptKeys = false;
+		keymap = Keymap.standard();
+		frameHistories = new ArrayList<>();
 
 		topMenu = new SubMenu(parent, "top");
 		topMenu.noBack();
 		topMenu.setMenu(this);
 		currMenu = topMenu;
 		selectedIndex = 0;
-		
-		// Register draw and keyEvent functions so they will be called
-		// by the PApplet.
-		parent.registerMethod("draw", this);
-		parent.registerMethod("keyEvent", this);
+	}
+
+	/* Set the renderer this menu draws itself with. */
+	public void setRenderer(MenuRenderer r) {
+		if (r == null) {
+			throw new IllegalArgumentException("Renderer must not be null.");
+		}
+		renderer = r;
+	}
+
+	/* Returns the renderer this menu draws itself with. */
+	public MenuRenderer getRenderer() {
+		return renderer;
+	}
+
+	/* Set the keymap used to turn key presses into commands. The keymap
+	 * is used directly, so later changes to it take effect immediately.
+	 */
+	public void setKeymap(Keymap k) {
+		if (k == null) {
+			throw new IllegalArgumentException("Keymap must not be null.");
+		}
+		keymap = k;
+	}
+
+	/* Returns the keymap used to turn key presses into commands. */
+	public Keymap getKeymap() {
+		return keymap;
 	}
 
 	/* Set the color of the text when this menu is displayed.
@@ -71,6 +202,10 @@ public class TextMenu implements PConstants {
 	 * in the menu.
 	 */
 	public void setColor(int c) {
+		if (parent == null) {
+			setColor(c, c ^ 0x00FFFFFF);
+			return;
+		}
 		float newR = 255 - parent.red(c);
 		float newG = 255 - parent.green(c);
 		float newB = 255 - parent.blue(c);
@@ -116,6 +251,13 @@ public class TextMenu implements PConstants {
 		topMenu.clear();
 	}
 
+	/* Returns an estimate of the memory used by this menu's items.
+	 * See MenuFootprint for how the estimate is made.
+	 */
+	public MenuFootprint footprint() {
+		return MenuFootprint.measure(topMenu);
+	}
+
 	/* Set the menu to showing. After making this call, the menu
 	 * will remain displayed on the screen until hide() is called.
 	 * If active is true, then the menu will accept key input. Otherwise,
@@ -132,47 +274,225 @@ public class TextMenu implements PConstants {
 	public void hide() {
 		isShowing = false;
 		acceptKeys = false;
+		entry.cancel();
 	}
 
 	/* Draws the menu, reflecting any updates that may have been made.
 	 * This function is called after the PApplet's draw() function.
 	 * If a sketch uses multiple libraries that include draw() functionality,
 	 * there is a potential for interference.
+	 * All drawing is done through this menu's MenuRenderer.
 	 */
 	public boolean draw() {
+		sampleHistories();
 		if (isShowing) {
+			long start = System.nanoTime();
 
 			int yDisplace = 0;
-			int index = 0;
-			float asc = parent.textAscent();
-			float dsc = parent.textDescent();
-			parent.noStroke();
+			MenuRenderer r = renderer;
+			r.begin();
+			float asc = r.textAscent();
+			float dsc = r.textDescent();
+			float spacing = r.lineSpacing();
+
+			// Choose which items to draw. When degraded, only the lines
+			// around the selected item are drawn.
+			int first = 0;
+			int last = currMenu.size();
+			if (degradeLevel >= DEGRADE_LINES && last > DEGRADED_LINES) {
+				first = Math.max(Math.min(selectedIndex - DEGRADED_LINES / 2, last - DEGRADED_LINES), 0);
+				last = first + DEGRADED_LINES;
+			}
+			boolean reuseLabels = updateLabelCache();
 			
-			// Loop through all items in the current SubMenu
+			// Loop through the items to draw in the current SubMenu
 			// and draw the text for each one, starting at the bottom.
-			for (int i = 0; i < currMenu.size(); i++) {
-				MenuItem m = currMenu.get(i);
+			for (int index = first; index < last; index++) {
+				MenuItem m = currMenu.get(index);
 				
-				parent.fill(textColor);
-				String mString = m.toString();
+				r.fill(textColor);
+				String mString;
+				if (m == entry.target()) {
+					mString = entry.label();
+				} else if (reuseLabels && index != selectedIndex && labels[index] != null) {
+					mString = labels[index];
+				} else {
+					mString = m.toString();
+					if (labels != null)
+						labels[index] = mString;
+				}
 				
 				// If current item is selected, draw a highlight box around it.
+				ValueHistory history = m.history();
+				float width = index == selectedIndex || history != null ? labelWidth(r, mString) : 0;
 				if (index == selectedIndex) {
-					float highlightWidth = 0;
-					for (char c : mString.toCharArray())
-						highlightWidth += parent.textWidth(c);
-					parent.rect(xCoord, yCoord - yDisplace - asc, highlightWidth, asc + dsc);
-					parent.fill(textColorInverse);
+					r.rect(xCoord, yCoord - yDisplace - asc, width, asc + dsc);
+					r.fill(textColorInverse);
 				}
 				// Draw the text for the current item.
-				parent.text(mString, xCoord, yCoord - yDisplace);
-				yDisplace += asc + TXT_SPACING;
-				index++;
+				r.text(mString, xCoord, yCoord - yDisplace);
+
+				// Draw the item's recent values after its text.
+				if (history != null && history.size() > 0) {
+					float charWidth = r.textWidth('0');
+					r.fill(textColor);
+					r.sparkline(history, xCoord + width + charWidth, yCoord - yDisplace - asc,
+							SPARKLINE_CHARS * charWidth, asc);
+				}
+				yDisplace += asc + spacing;
 			}
+			r.end();
+
+			lastDrawTime = System.nanoTime() - start;
+			updateDegradeLevel();
 		}
 		return isShowing;
 	}
 
+	/* Returns the width of a label as drawn by a renderer. When drawing is
+	 * degraded, the width is estimated from the width of a digit.
+	 */
+	private float labelWidth(MenuRenderer r, String label) {
+		if (degradeLevel >= DEGRADE_HIGHLIGHT)
+			return label.length() * r.textWidth('0');
+		float width = 0;
+		for (int i = 0; i < label.length(); i++)
+			width += r.textWidth(label.charAt(i));
+		return width;
+	}
+
+	/* Store the current value of every option tracked each frame, and
+	 * forget histories whose options no longer keep them.
+	 */
+	private void sampleHistories() {
+		for (int i = frameHistories.size() - 1; i >= 0; i--) {
+			ValueHistory h = frameHistories.get(i);
+			if (h.isTracking())
+				h.sample();
+			else
+				frameHistories.remove(i);
+		}
+	}
+
+	/* Keep the last capacity values of an IntegerOption or DoubleOption,
+	 * sampled once per frame whenever draw() is called, even while the
+	 * menu is hidden, and show them as a sparkline next to the option.
+	 * Replaces any history the option kept before; call the option's
+	 * untrack() to stop. Returns the new history.
+	 */
+	public ValueHistory trackEachFrame(MenuItem option, int capacity) {
+		ValueHistory h;
+		if (option instanceof IntegerOption) {
+			h = ((IntegerOption)option).track(capacity, true);
+		} else if (option instanceof DoubleOption) {
+			h = ((DoubleOption)option).track(capacity, true);
+		} else {
+			throw new IllegalArgumentException("Only IntegerOption and DoubleOption values can be tracked.");
+		}
+		frameHistories.add(h);
+		return h;
+	}
+
+	/* Prepare the label cache for this frame. Returns true iff labels of
+	 * items that are not selected should be reused from earlier frames.
+	 */
+	private boolean updateLabelCache() {
+		if (degradeLevel < DEGRADE_LABELS) {
+			labels = null;
+			labelMenu = null;
+			return false;
+		}
+		if (labelMenu != currMenu || labels == null || labels.length != currMenu.size()) {
+			labels = new String[currMenu.size()];
+			labelMenu = currMenu;
+			labelAge = 0;
+			return false;
+		}
+		labelAge++;
+		if (labelAge >= LABEL_REFRESH_FRAMES) {
+			labelAge = 0;
+			return false;
+		}
+		return true;
+	}
+
+	/* Raise the degrade level if the last frame went over the budget,
+	 * and lower it after enough frames well under the budget.
+	 */
+	private void updateDegradeLevel() {
+		if (frameBudget <= 0) {
+			degradeLevel = DEGRADE_NONE;
+			return;
+		}
+		if (lastDrawTime > frameBudget) {
+			degradeLevel = Math.min(degradeLevel + 1, DEGRADE_LABELS);
+			fastFrames = 0;
+		} else if (degradeLevel > DEGRADE_NONE && lastDrawTime < frameBudget / 2) {
+			fastFrames++;
+			if (fastFrames >= RECOVER_FRAMES) {
+				degradeLevel--;
+				fastFrames = 0;
+			}
+		} else {
+			fastFrames = 0;
+		}
+		if (degradeLevel > DEGRADE_NONE)
+			degradedFrames++;
+	}
+
+	/* Set the time allowed for drawing the menu each frame, in
+	 * milliseconds. If drawing takes longer, later frames are drawn with
+	 * less detail, one level at a time: first the highlight box is sized
+	 * from an estimate, then only the lines around the selected item are
+	 * drawn, and then the labels of other items are only refreshed every
+	 * few frames. Detail comes back once frames are drawn quickly again.
+	 * A budget of 0 removes the limit.
+	 */
+	public void setFrameBudget(float millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Frame budget cannot be negative.");
+		}
+		frameBudget = (long)(millis * 1000000);
+		if (frameBudget == 0) {
+			degradeLevel = DEGRADE_NONE;
+			fastFrames = 0;
+		}
+	}
+
+	/* Returns the time allowed for drawing the menu each frame, in
+	 * milliseconds, or 0 if there is no limit.
+	 */
+	public float getFrameBudget() {
+		return frameBudget / 1000000f;
+	}
+
+	/* Returns how much drawing is currently degraded to stay within the
+	 * frame budget: DEGRADE_NONE, DEGRADE_HIGHLIGHT, DEGRADE_LINES, or
+	 * DEGRADE_LABELS.
+	 */
+	public int getDegradeLevel() {
+		return degradeLevel;
+	}
+
+	/* Returns true iff the next frame will be drawn with less detail
+	 * to stay within the frame budget.
+	 */
+	public boolean isDegraded() {
+		return degradeLevel > DEGRADE_NONE;
+	}
+
+	/* Returns the number of frames drawn with less detail so far. */
+	public long degradedFrames() {
+		return degradedFrames;
+	}
+
+	/* Returns the time taken by the last call to draw() that drew the
+	 * menu, in milliseconds.
+	 */
+	public float lastDrawTime() {
+		return lastDrawTime / 1000000f;
+	}
+
 	/* Returns true iff this menu is currently being displayed on screen.
 	 * true after show(), false after hide().
 	 */
@@ -181,38 +501,201 @@ public class TextMenu implements PConstants {
 	}
 
 	/* Called when a key event occurs.
-	 * If this menu is currently accepting key input, the keypress
-	 * will be processed. If the key is UP or DOWN, the selected item will
-	 * change to the one above or below the currently selected item. Otherwise,
-	 * the key will be passed on to be handled by the currently selected item.
+	 * If the key and the modifiers held are bound to a hotkey, the hotkey
+	 * is performed, even if the menu is hidden. Otherwise, if this menu
+	 * is currently accepting key input, the keypress
+	 * will be processed. The key is looked up in the keymap; if it is bound
+	 * to UP or DOWN, the selected item will change to the one above or below
+	 * the currently selected item. Otherwise, the command and key will be
+	 * passed on to be handled by the currently selected item. If the item
+	 * does not use a BACK command, the menu goes back one level.
+	 * 
+	 * Typing a digit or '-' that is not bound in the keymap while an
+	 * IntegerOption or DoubleOption is selected starts entering a number
+	 * into it, as does an unbound '.' for a DoubleOption. Keys bound to a
+	 * command, such as '-' (MIN) and '.' (INCREMENT_FINE) in the standard
+	 * keymap, perform their command instead. Once an entry has begun,
+	 * digits, '-' (flips the sign), '.' (decimal point) and BACKSPACE edit
+	 * the number, ENTER sets the option to it, and any other key cancels it.
 	 * 
 	 * Returns true iff some action was successfully performed as a result.
 	 */
 	public boolean keyEvent(KeyEvent e) {
+		if (hotkeys != null && e.getAction() == KeyEvent.PRESS) {
+			int keyCode = e.getKeyCode();
+			if (keyCode >= 0 && keyCode < 256) {
+				Hotkey h = hotkeys[hotkeyIndex(e.getModifiers(), keyCode)];
+				if (h != null) {
+					if (h.action != null) {
+						h.action.run();
+						return true;
+					}
+					return h.item.command(h.command, e.getKey(), keyCode);
+				}
+			}
+		}
 		if (acceptKeys && e.getAction() == KeyEvent.PRESS) {
 			char key = e.getKey();
 			int keyCode = e.getKeyCode();
-			if (key == CODED && keyCode == UP) {
+			MenuCommand command = keymap.lookup(key, keyCode);
+			if (entry.isActive()) {
+				if (command == MenuCommand.ENTER) {
+					entry.commit();
+					return true;
+				} else if (key == BACKSPACE) {
+					entry.backspace();
+					return true;
+				} else if (entry.type(key)) {
+					return true;
+				}
+				entry.cancel();
+			} else if (command == null && !currMenu.isEmpty() && NumericEntry.starts(currMenu.get(selectedIndex), key)) {
+				entry.begin(currMenu.get(selectedIndex));
+				entry.type(key);
+				return true;
+			}
+
+			if (command == MenuCommand.UP) {
 				// move selected index up by one, capped at the last item
-				selectedIndex = Math.min(selectedIndex + 1, currMenu.size() - 1);
-			} else if (key == CODED && keyCode == DOWN) {
+				selectedIndex = Math.max(Math.min(selectedIndex + 1, currMenu.size() - 1), 0);
+			} else if (command == MenuCommand.DOWN) {
 				// move selected index down by one, floored at zero
 				selectedIndex = Math.max(selectedIndex - 1, 0);
 			} else if (!currMenu.isEmpty()) {
 				// let the currently selected item handle the key
-				return currMenu.get(selectedIndex).action(key, keyCode);
+				if (currMenu.itemCommand(selectedIndex, command, key, keyCode))
+					return true;
+				return command == MenuCommand.BACK && currMenu.back();
 			}
 			return true;
 		}
 		return false;
 	}
 
+	/* Make a key combination perform a command on an item, wherever the
+	 * item is in the menu and whether or not the menu is showing. modifiers
+	 * is a combination of Event.SHIFT, Event.CTRL, Event.META and Event.ALT
+	 * that must be held, and keyCode is the key's code as given by
+	 * KeyEvent.getKeyCode(). Hotkeys are checked before the keymap, so a
+	 * key used by a hotkey no longer works in the menu. For example,
+	 * hotkey(Event.CTRL, 'R', speed, MenuCommand.RESET) resets an option,
+	 * and hotkey(0, java.awt.event.KeyEvent.VK_F2, colors, MenuCommand.ENTER)
+	 * opens a SubMenu. Replaces any hotkey bound to the same combination.
+	 */
+	public void hotkey(int modifiers, int keyCode, MenuItem item, MenuCommand command) {
+		if (item == null || command == null) {
+			throw new IllegalArgumentException("Item and command must not be null.");
+		}
+		setHotkey(modifiers, keyCode, new Hotkey(item, command, null));
+	}
+
+	/* Make a key combination run an action, such as setting an option to
+	 * a value, whether or not the menu is showing:
+	 * hotkey(Event.SHIFT, '1', () -> speed.set(10)).
+	 */
+	public void hotkey(int modifiers, int keyCode, Runnable action) {
+		if (action == null) {
+			throw new IllegalArgumentException("Action must not be null.");
+		}
+		setHotkey(modifiers, keyCode, new Hotkey(null, null, action));
+	}
+
+	/* Remove the hotkey bound to a key combination.
+	 * Returns true iff there was one.
+	 */
+	public boolean removeHotkey(int modifiers, int keyCode) {
+		int index = hotkeyIndex(modifiers, checkHotkeyCode(keyCode));
+		if (hotkeys == null || hotkeys[index] == null)
+			return false;
+		hotkeys[index] = null;
+		return true;
+	}
+
+	/* Remove all hotkeys. */
+	public void clearHotkeys() {
+		hotkeys = null;
+	}
+
+	/* Store a hotkey in the table, creating the table if needed. */
+	private void setHotkey(int modifiers, int keyCode, Hotkey h) {
+		int index = hotkeyIndex(modifiers, checkHotkeyCode(keyCode));
+		if (hotkeys == null)
+			hotkeys = new Hotkey[HOTKEY_MODIFIERS * 256];
+		hotkeys[index] = h;
+	}
+
+	/* Returns the position of a key combination in the hotkey table. */
+	private static int hotkeyIndex(int modifiers, int keyCode) {
+		return (modifiers & (HOTKEY_MODIFIERS - 1)) << 8 | keyCode;
+	}
+
+	/* Returns keyCode, or throws an exception if it cannot be a hotkey. */
+	private static int checkHotkeyCode(int keyCode) {
+		if (keyCode < 0 || keyCode >= 256) {
+			throw new IllegalArgumentException("Invalid key code for a hotkey: " + keyCode);
+		}
+		return keyCode;
+	}
+
+	/* Returns the PApplet this menu was created with, or null. */
+	PApplet getApplet() {
+		return parent;
+	}
+
+	/* Returns the SubMenu representing the top level of this menu. */
+	SubMenu getTopMenu() {
+		return topMenu;
+	}
+
+	/* Returns the SubMenu currently displayed. */
+	SubMenu getCurrMenu() {
+		return currMenu;
+	}
+
+	/* Returns the index of the selected item in the current SubMenu. */
+	int getSelectedIndex() {
+		return selectedIndex;
+	}
+
+	/* Called by SubMenu after items are removed from it, with the index
+	 * of the removed item, or -1 if all items were removed. Keeps the same
+	 * item selected if it is still there and the selection within range,
+	 * and leaves the current SubMenu if it is no longer in this menu.
+	 */
+	void itemsRemoved(SubMenu sub, int index) {
+		if (!contains(currMenu)) {
+			setCurrMenu(contains(sub) ? sub : topMenu);
+		} else if (currMenu == sub && index >= 0 && index < selectedIndex) {
+			selectedIndex--;
+		}
+		selectedIndex = Math.max(Math.min(selectedIndex, currMenu.size() - 1), 0);
+		if (entry.isActive() && (currMenu.isEmpty() || currMenu.get(selectedIndex) != entry.target()))
+			entry.cancel();
+	}
+
+	/* Returns true iff a SubMenu is the top level of this menu or is
+	 * reached from it.
+	 */
+	private boolean contains(SubMenu sub) {
+		for (SubMenu s = sub; s != null; s = s.superMenu) {
+			if (s == topMenu)
+				return true;
+		}
+		return false;
+	}
+
 	/* Used by SubMenu to change the current SubMenu being displayed
-	 * when the user navigates up or down a level.
+	 * when the user navigates up or down a level. The item that was
+	 * selected when sub was last left is selected again.
 	 */
 	protected void setCurrMenu(SubMenu sub) {
+		if (sub == null)
+			return;
+		if (currMenu != null)
+			currMenu.cursor = selectedIndex;
 		currMenu = sub;
-		selectedIndex = 0;
+		selectedIndex = Math.max(Math.min(sub.cursor, sub.size() - 1), 0);
+		entry.cancel();
 	}
 
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ import processing.core.*;
 public class ToggleableOption extends MenuItem {
 
 	// The option's current value.
-	private boolean value;
+	private volatile boolean value;
 
 	/* Constructor.
 	 * nameInit is the name of this option and valueInit is its initial value.
@@ -27,13 +27,20 @@ public class ToggleableOption extends MenuItem {
 	}
 
 	/* Implementation of MenuItem.action().
-	 * Perform some action on a key press when this item is selected.
-	 * 
-	 * Toggles the value of this option when right arrow, left arrow,
-	 * enter, or return are received.
+	 * Perform some action on a key press when this item is selected,
+	 * using the standard keymap.
 	 */
 	protected boolean action(char key, int keyCode) {
-		if ((key == CODED && (keyCode == RIGHT || keyCode == LEFT)) || key == ENTER || key == RETURN) {
+		return command(Keymap.DEFAULT.lookup(key, keyCode), key, keyCode);
+	}
+
+	/* Implementation of MenuItem.command().
+	 * 
+	 * Toggles the value of this option on INCREMENT, DECREMENT, or ENTER
+	 * (right arrow, left arrow, enter, or return in the standard keymap).
+	 */
+	protected boolean command(MenuCommand command, char key, int keyCode) {
+		if (command == MenuCommand.INCREMENT || command == MenuCommand.DECREMENT || command == MenuCommand.ENTER) {
 			return toggle();
 		}
 		return false;
@@ -50,7 +57,11 @@ public class ToggleableOption extends MenuItem {
 	public boolean set(boolean toSet) {
 		boolean oldValue = value;
 		value = toSet;
-		return oldValue != value;
+		if (oldValue != value) {
+			changed(oldValue ? 1 : 0, value ? 1 : 0);
+			return true;
+		}
+		return false;
 	}
 
 	/* Toggle the value of this option. I.e., if this option is currently
@@ -0,0 +1,123 @@
+package menu;
+
+/* The recent values of an IntegerOption or DoubleOption, kept in a ring
+ * buffer of fixed capacity so memory stays bounded however long the
+ * option is tracked. Values are stored as primitives, without boxing.
+ * Once the buffer is full, each new sample replaces the oldest one.
+ *
+ * A history either samples on change, storing the new value every time
+ * the option's value changes (see IntegerOption.track()), or samples each
+ * frame, storing the value once per TextMenu.draw() (see
+ * TextMenu.trackEachFrame()). At 60 frames per second, a history sampled
+ * each frame with a capacity of 60 * n covers the last n seconds.
+ *
+ * TextMenu draws a sparkline of the history next to the option's label.
+ * Samples are added on the thread that changes the option or draws the
+ * menu; reading a history from another thread at the same time may see a
+ * sample that is about to be replaced.
+ */
+public abstract class ValueHistory {
+
+	// Number of samples the buffer can hold.
+	private final int capacity;
+
+	// Number of samples stored, at most capacity.
+	int count;
+
+	// Position in the buffer where the next sample is stored.
+	int next;
+
+	// Is this history sampled each frame rather than on change?
+	final boolean eachFrame;
+
+	/* Constructor. Creates an empty history holding up to capacityInit samples. */
+	ValueHistory(int capacityInit, boolean eachFrameInit) {
+		if (capacityInit <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive. Given: " + capacityInit);
+		}
+		capacity = capacityInit;
+		eachFrame = eachFrameInit;
+	}
+
+	/* Returns the number of samples this history can hold. */
+	public int capacity() {
+		return capacity;
+	}
+
+	/* Returns the number of samples stored. */
+	public int size() {
+		return count;
+	}
+
+	/* Returns true iff this history is sampled once per frame rather than
+	 * whenever the option changes.
+	 */
+	public boolean isEachFrame() {
+		return eachFrame;
+	}
+
+	/* Returns a stored sample. Index 0 is the oldest sample and size() - 1
+	 * the newest.
+	 */
+	public abstract double value(int index);
+
+	/* Returns the newest sample. */
+	public double latest() {
+		return value(count - 1);
+	}
+
+	/* Returns the smallest stored sample. */
+	public double min() {
+		double m = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+			m = Math.min(m, value(i));
+		return m;
+	}
+
+	/* Returns the largest stored sample. */
+	public double max() {
+		double m = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+			m = Math.max(m, value(i));
+		return m;
+	}
+
+	/* Remove all stored samples. */
+	public void clear() {
+		count = 0;
+		next = 0;
+	}
+
+	/* Returns the option whose values are stored. */
+	public abstract MenuItem getOption();
+
+	/* Store the option's current value. Called each frame by TextMenu
+	 * for histories sampled each frame.
+	 */
+	abstract void sample();
+
+	/* Returns true iff this history is still the one its option stores
+	 * samples in.
+	 */
+	abstract boolean isTracking();
+
+	/* Returns an estimate of the memory used by this history, in bytes,
+	 * made in the same way as MenuFootprint.
+	 */
+	abstract long footprint();
+
+	/* Returns the position in the buffer of a sample, checking its index. */
+	final int slot(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("No sample at index " + index);
+		int s = next - count + index;
+		return s < 0 ? s + capacity : s;
+	}
+
+	/* Move past a stored sample, replacing the oldest one if full. */
+	final void advance() {
+		next = next + 1 == capacity ? 0 : next + 1;
+		if (count < capacity)
+			count++;
+	}
+}
@@ -0,0 +1,335 @@
+package menu;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import processing.core.*;
+import processing.event.*;
+
+/* Randomized stress test of a headless TextMenu. Runs random sequences of
+ * add(), remove(), clear(), setCurrMenu(), keyEvent() and value changes
+ * against a menu drawn with a RecordingRenderer, and checks after every
+ * step that:
+ *
+ *   - 0 <= selectedIndex < size of the current SubMenu (0 if it is empty),
+ *   - the current SubMenu can be reached from the top menu,
+ *   - every SubMenu and ColorOption reachable from the top menu is linked
+ *     to its SubMenu and to the TextMenu, and no other one is linked to the
+ *     TextMenu or to a SubMenu that does not contain it.
+ *
+ * With reader threads, other threads keep reading the values of every
+ * option that was created, including ColorOptions whose color menus are
+ * being created, and check that they stay within their bounds. The menu
+ * itself is only changed on the main thread, as in a sketch.
+ *
+ * Compile it together with the library sources and Processing's core.jar,
+ * then run: java menu.MenuStress [steps [seed [readers]]]
+ * Defaults to 200000 steps, seed 1 and no reader threads. Prints the seed
+ * and throws an exception at the first broken invariant.
+ */
+public class MenuStress implements PConstants {
+
+	// Largest number of SubMenus created before the menu is cleared.
+	static final int MAX_SUBMENUS = 300;
+
+	// Keys typed at the menu, and coded keys.
+	private static final char[] KEYS = { ENTER, RETURN, BACKSPACE, '-', '=', '.', ',', '<', '>', '/', '0', '3', '7', 'x' };
+	private static final int[] CODES = { UP, DOWN, LEFT, RIGHT };
+
+	private final Random random;
+	private final TextMenu menu;
+
+	// Every SubMenu and ColorOption created, reachable or not.
+	private final ArrayList<SubMenu> subs;
+	private final ArrayList<ColorOption> colors;
+
+	// Every option created, for the reader threads. Replaced, never changed.
+	private volatile MenuItem[] readable;
+	private final ArrayList<MenuItem> options;
+
+	// First exception thrown by a reader thread.
+	private final AtomicReference<Throwable> readerError;
+	private volatile boolean reading;
+
+	private long step;
+
+	/* Constructor. Creates an empty, showing menu. */
+	MenuStress(long seed) {
+		random = new Random(seed);
+		menu = new TextMenu(new RecordingRenderer(), 0, 100, 0, 0xFFFFFF);
+		menu.show(true);
+		subs = new ArrayList<>();
+		colors = new ArrayList<>();
+		options = new ArrayList<>();
+		readable = new MenuItem[0];
+		readerError = new AtomicReference<>();
+	}
+
+	public static void main(String[] args) throws Throwable {
+		long steps = args.length > 0 ? Long.parseLong(args[0]) : 200000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int readers = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		System.out.println("MenuStress: " + steps + " steps, seed " + seed + ", " + readers + " reader threads");
+		new MenuStress(seed).run(steps, readers);
+		System.out.println("MenuStress: ok");
+	}
+
+	/* Run the given number of random steps with the given number of
+	 * reader threads, checking the invariants after each one.
+	 */
+	void run(long steps, int readers) throws Throwable {
+		Thread[] threads = new Thread[readers];
+		reading = true;
+		for (int i = 0; i < readers; i++) {
+			threads[i] = new Thread(this::read, "MenuStress reader " + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			for (step = 0; step < steps; step++) {
+				randomStep();
+				check();
+				if (readerError.get() != null)
+					break;
+			}
+		} finally {
+			reading = false;
+			for (Thread t : threads)
+				t.join();
+		}
+		if (readerError.get() != null)
+			throw readerError.get();
+	}
+
+	/* Perform one random operation on the menu. */
+	private void randomStep() {
+		int op = random.nextInt(20);
+		SubMenu sub = randomSub();
+		if (op < 2) {
+			SubMenu created = new SubMenu(null, "sub" + step);
+			subs.add(created);
+			sub.add(created);
+		} else if (op < 5) {
+			sub.add(newOption());
+		} else if (op < 6) {
+			// Try to add an existing item again, which may be rejected.
+			MenuItem existing = random.nextBoolean() && !subs.isEmpty() ? subs.get(random.nextInt(subs.size()))
+					: colors.isEmpty() ? null : colors.get(random.nextInt(colors.size()));
+			try {
+				sub.add(existing);
+			} catch (IllegalArgumentException e) {
+				// Expected for nulls, items already in a SubMenu, and cycles.
+			}
+		} else if (op < 8) {
+			if (sub.size() > 0)
+				sub.remove(random.nextInt(sub.size()));
+		} else if (op < 9) {
+			if (random.nextInt(20) == 0)
+				sub.clear();
+		} else if (op < 10) {
+			// Only SubMenus in the menu can be shown; null is ignored.
+			SubMenu target = random.nextInt(10) == 0 ? null : randomSub();
+			if (target == null || reachable().containsKey(target))
+				menu.setCurrMenu(target);
+		} else if (op < 12) {
+			changeValue();
+		} else {
+			boolean coded = random.nextBoolean();
+			char key = coded ? CODED : KEYS[random.nextInt(KEYS.length)];
+			int keyCode = coded ? CODES[random.nextInt(CODES.length)] : key == ENTER || key == RETURN ? ENTER : 0;
+			menu.keyEvent(new KeyEvent(null, 0, KeyEvent.PRESS, 0, key, keyCode));
+		}
+		if (step % 100 == 0)
+			menu.draw();
+		if (subs.size() > MAX_SUBMENUS) {
+			menu.clear();
+			subs.clear();
+			colors.clear();
+			options.clear();
+			readable = new MenuItem[0];
+		}
+	}
+
+	/* Returns a random SubMenu, which may not be in the menu. */
+	private SubMenu randomSub() {
+		int i = random.nextInt(subs.size() + 1);
+		return i == subs.size() ? menu.getTopMenu() : subs.get(i);
+	}
+
+	/* Returns a new option of a random kind. */
+	private MenuItem newOption() {
+		MenuItem item;
+		switch (random.nextInt(6)) {
+		case 0:
+			item = new IntegerOption(null, "int", 5, -10, 10);
+			break;
+		case 1:
+			item = new DoubleOption(null, "double", 0.5, -1, 1);
+			break;
+		case 2:
+			item = new ToggleableOption(null, "toggle", false);
+			break;
+		case 3:
+			item = new EnumeratedOption(null, "enum", new String[] { "a", "b", "c" }, 1);
+			break;
+		case 4:
+			ColorOption color = new ColorOption(null, "color", random.nextBoolean() ? RGB : HSB, 10, 20, 30);
+			colors.add(color);
+			item = color;
+			break;
+		default:
+			return new StringItem(null, "text");
+		}
+		options.add(item);
+		readable = options.toArray(new MenuItem[0]);
+		return item;
+	}
+
+	/* Change the value of a random option, as another part of a sketch might. */
+	private void changeValue() {
+		if (options.isEmpty())
+			return;
+		MenuItem item = options.get(random.nextInt(options.size()));
+		if (item instanceof IntegerOption) {
+			((IntegerOption)item).set(random.nextInt(41) - 20);
+		} else if (item instanceof DoubleOption) {
+			((DoubleOption)item).set(random.nextDouble() * 4 - 2);
+		} else if (item instanceof ToggleableOption) {
+			((ToggleableOption)item).set(random.nextBoolean());
+		} else if (item instanceof EnumeratedOption) {
+			((EnumeratedOption)item).set(random.nextInt(3));
+		} else if (item instanceof ColorOption) {
+			ColorOption color = (ColorOption)item;
+			if (random.nextBoolean())
+				color.setComponent(random.nextInt(300) - 20, random.nextInt(3));
+			else
+				color.colorMenu();
+		}
+	}
+
+	/* Returns every SubMenu and ColorOption reachable from the top menu,
+	 * along with the SubMenus that contain it.
+	 */
+	private IdentityHashMap<MenuItem, ArrayList<SubMenu>> reachable() {
+		IdentityHashMap<MenuItem, ArrayList<SubMenu>> found = new IdentityHashMap<>();
+		found.put(menu.getTopMenu(), new ArrayList<>());
+		ArrayList<SubMenu> queue = new ArrayList<>();
+		queue.add(menu.getTopMenu());
+		for (int q = 0; q < queue.size(); q++) {
+			SubMenu sub = queue.get(q);
+			for (int i = 0; i < sub.size(); i++) {
+				MenuItem item = sub.get(i);
+				if (!(item instanceof SubMenu) && !(item instanceof ColorOption))
+					continue;
+				ArrayList<SubMenu> containers = found.get(item);
+				if (containers == null) {
+					containers = new ArrayList<>();
+					found.put(item, containers);
+					if (item instanceof SubMenu)
+						queue.add((SubMenu)item);
+				}
+				containers.add(sub);
+				// A color's menu can be shown, and goes back to the
+				// SubMenu the color is in.
+				SubMenu colorMenu = item instanceof ColorOption ? ((ColorOption)item).colorMenu : null;
+				if (colorMenu != null) {
+					found.putIfAbsent(colorMenu, new ArrayList<>());
+					found.get(colorMenu).add(sub);
+				}
+			}
+		}
+		return found;
+	}
+
+	/* Throw an exception if any invariant is broken. */
+	private void check() {
+		SubMenu curr = menu.getCurrMenu();
+		int selected = menu.getSelectedIndex();
+		if (selected < 0 || selected >= Math.max(curr.size(), 1))
+			fail("selectedIndex " + selected + " out of range for size " + curr.size());
+
+		IdentityHashMap<MenuItem, ArrayList<SubMenu>> found = reachable();
+		if (!found.containsKey(curr))
+			fail("current SubMenu " + curr.name + " is not reachable from the top menu");
+
+		for (SubMenu sub : subs)
+			checkLinks(sub, sub.superMenu, sub.getMenu(), found);
+		for (ColorOption color : colors) {
+			checkLinks(color, color.superMenu, color.menu, found);
+			SubMenu colorMenu = color.colorMenu;
+			if (colorMenu != null && (colorMenu.superMenu != color.superMenu || colorMenu.getMenu() != color.menu))
+				fail("color menu of " + color.name + " is not linked like its color");
+		}
+	}
+
+	/* Check the links of a SubMenu or ColorOption. */
+	private void checkLinks(MenuItem item, SubMenu superMenu, TextMenu itemMenu,
+			IdentityHashMap<MenuItem, ArrayList<SubMenu>> found) {
+		ArrayList<SubMenu> containers = found.get(item);
+		if (containers != null) {
+			if (itemMenu != menu)
+				fail(item.name + " is in the menu but not linked to it");
+			if (!containers.contains(superMenu))
+				fail(item.name + " is in the menu but linked to a SubMenu it is not in");
+		} else {
+			if (itemMenu != null)
+				fail(item.name + " is not in the menu but still linked to it");
+			if (superMenu != null && !contains(superMenu, item))
+				fail(item.name + " is linked to a SubMenu it is not in");
+		}
+	}
+
+	/* Returns true iff sub directly contains item. */
+	private static boolean contains(SubMenu sub, MenuItem item) {
+		for (int i = 0; i < sub.size(); i++) {
+			if (sub.get(i) == item)
+				return true;
+		}
+		return false;
+	}
+
+	private void fail(String message) {
+		throw new IllegalStateException("Step " + step + ": " + message);
+	}
+
+	/* Body of the reader threads. Reads every option until stopped. */
+	private void read() {
+		try {
+			while (reading) {
+				for (MenuItem item : readable) {
+					readValue(item);
+				}
+			}
+		} catch (Throwable t) {
+			readerError.compareAndSet(null, t);
+		}
+	}
+
+	/* Read an option's value and check it is within its bounds. */
+	private static void readValue(MenuItem item) {
+		if (item instanceof IntegerOption) {
+			IntegerOption option = (IntegerOption)item;
+			int v = option.get();
+			if (v < -10 || v > 10)
+				throw new IllegalStateException("IntegerOption value out of range: " + v);
+		} else if (item instanceof DoubleOption) {
+			double v = ((DoubleOption)item).get();
+			if (v < -1 || v > 1)
+				throw new IllegalStateException("DoubleOption value out of range: " + v);
+		} else if (item instanceof EnumeratedOption) {
+			int v = ((EnumeratedOption)item).get();
+			if (v < 0 || v >= 3)
+				throw new IllegalStateException("EnumeratedOption index out of range: " + v);
+		} else if (item instanceof ColorOption) {
+			ColorOption color = (ColorOption)item;
+			for (int comp = 0; comp < 3; comp++) {
+				int v = color.getComponent(comp);
+				if (v < 0 || v > 255)
+					throw new IllegalStateException("ColorOption component out of range: " + v);
+			}
+		}
+		item.toString();
+	}
+}